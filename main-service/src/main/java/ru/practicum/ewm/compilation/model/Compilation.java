@@ -18,7 +18,8 @@ import java.util.Set;
 public class Compilation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "compilations_seq")
+    @SequenceGenerator(name = "compilations_seq", sequenceName = "compilations_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "pinned")
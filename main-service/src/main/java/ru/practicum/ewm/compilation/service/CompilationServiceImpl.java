@@ -8,6 +8,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.ViewCountCache;
 import ru.practicum.ewm.ViewStatsDto;
 import ru.practicum.ewm.compilation.dto.CompilationDto;
 import ru.practicum.ewm.compilation.dto.NewCompilationDto;
@@ -37,6 +38,7 @@ public class CompilationServiceImpl implements CompilationService {
     private final EventRepository eventRepository;
     private final RequestRepository requestRepository;
     private final StatsClient statsClient;
+    private final ViewCountCache viewCountCache;
     private final EventMapper eventMapper;
 
     // Администрирование: добавление новой подборки (подборка может не содержать событий)
@@ -179,22 +181,17 @@ public class CompilationServiceImpl implements CompilationService {
     }
 
     private CompilationDto addConfirmedRequestsAndViews(CompilationDto compilationDto) {
+        // Просмотры всех событий подборки одним запросом
+        Map<String, Long> views = viewCountCache.getViews(compilationDto.getEvents().stream()
+                .map(eventDto -> "/events/" + eventDto.getId())
+                .toList());
         for (EventShortDto eventDto : compilationDto.getEvents()) {
             // Добавить сonfirmedRequests к каждому событию
             eventDto.setConfirmedRequests(
                     requestRepository.countByEventIdAndStatus(eventDto.getId(), RequestStatus.CONFIRMED));
 
             // Добавить views к каждому событию
-            List<String> uris = new ArrayList<>();
-
-            // создаем uri для обращения к базе данных статистики
-            uris.add("/events/" + eventDto.getId());
-            List<ViewStatsDto> viewStatsDtoList = statsClient.getStats(LocalDateTime.now().minusYears(100), LocalDateTime.now(), uris, true);
-            if (viewStatsDtoList.isEmpty()) {
-                eventDto.setViews(0L);
-            } else {
-                eventDto.setViews(viewStatsDtoList.getFirst().getHits());
-            }
+            eventDto.setViews(views.get("/events/" + eventDto.getId()));
         }
         return compilationDto;
     }
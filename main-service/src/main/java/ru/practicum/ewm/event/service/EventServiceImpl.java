@@ -7,9 +7,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.ewm.ClientException;
 import ru.practicum.ewm.EndpointHitDto;
-import ru.practicum.ewm.StatsClient;
-import ru.practicum.ewm.ViewStatsDto;
+import ru.practicum.ewm.HitReporter;
+import ru.practicum.ewm.HitSpool;
+import ru.practicum.ewm.ViewCountCache;
 import ru.practicum.ewm.category.model.Category;
 import ru.practicum.ewm.category.repository.CategoryRepository;
 import ru.practicum.ewm.event.dto.*;
@@ -48,7 +51,8 @@ public class EventServiceImpl implements EventService {
     private final UserRepository userRepository;
     private final LocationRepository locationRepository;
     private final RequestRepository requestRepository;
-    private final StatsClient statsClient;
+    private final HitReporter hitReporter;
+    private final ViewCountCache viewCountCache;
     private final RequestMapper requestMapper;
 
     // Админ: поиск событий
@@ -56,10 +60,18 @@ public class EventServiceImpl implements EventService {
     public List<EventFullDto> getEventsByAdmin(AdminEventFilter filter) {
         List<Event> events = handleFilters(filter, filter.getFrom(), filter.getSize());
         log.info("По указанным фильтрам найдено {} событий", events.size());
-        return events.stream()
+        List<EventFullDto> eventFullDtoList = events.stream()
                 .map(eventMapper::toEventFullDto)
-                .map(this::addConfirmedRequestsAndViews)
                 .toList();
+        // Просмотры всех найденных событий одним запросом
+        Map<String, Long> views = viewCountCache.getViews(eventFullDtoList.stream()
+                .map(e -> "/events/" + e.getId())
+                .toList());
+        eventFullDtoList.forEach(e -> {
+            e.setConfirmedRequests(requestRepository.countByEventIdAndStatus(e.getId(), RequestStatus.CONFIRMED));
+            e.setViews(views.get("/events/" + e.getId()));
+        });
+        return eventFullDtoList;
     }
 
     // Админ: редактирование данных события и его статуса (отклонение/публикация).
@@ -117,16 +129,14 @@ public class EventServiceImpl implements EventService {
         // Получение одобренных заявок одним запросом
         Map<Long, Long> confirmedCounts = requestRepository.countConfirmedByEventIds(eventIds);
 
-        // Получение просмотров одним запросом к statsClient
+        // Получение просмотров: недостающие в кэше uri запрашиваются одним запросом к statsClient
         List<String> uris = eventIds.stream()
                 .map(id -> "/events/" + id)
                 .toList();
-        List<ViewStatsDto> viewStatsDtoList = statsClient.getStats(LocalDateTime.now().minusYears(100),
-                LocalDateTime.now(), uris, true);
-        Map<Long, Long> viewsMap = viewStatsDtoList.stream()
+        Map<Long, Long> viewsMap = viewCountCache.getViews(uris).entrySet().stream()
                 .collect(Collectors.toMap(
-                        v -> Long.parseLong(v.getUri().split("/")[2]),
-                        ViewStatsDto::getHits
+                        v -> Long.parseLong(v.getKey().split("/")[2]),
+                        Map.Entry::getValue
                 ));
 
         // Окончательное формирование списка событий
@@ -347,7 +357,7 @@ public class EventServiceImpl implements EventService {
                 .ip(userIp)
                 .timestamp(LocalDateTime.now())
                 .build();
-        statsClient.addHit(hitDto);
+        addHit(hitDto);
 
         List<Event> events = eventRepository.findEvents(
                 text == null ? null : text.toLowerCase(),
@@ -362,8 +372,15 @@ public class EventServiceImpl implements EventService {
 
         List<EventShortDto> result = events.stream()
                 .map(eventMapper::toEventShortDto)
-                .map(this::addShortConfirmedRequestsAndViews)
                 .collect(Collectors.toList());
+        // Просмотры всех найденных событий одним запросом
+        Map<String, Long> views = viewCountCache.getViews(result.stream()
+                .map(e -> "/events/" + e.getId())
+                .toList());
+        result.forEach(e -> {
+            e.setConfirmedRequests(requestRepository.countByEventIdAndStatus(e.getId(), RequestStatus.CONFIRMED));
+            e.setViews(views.get("/events/" + e.getId()));
+        });
         log.info("Получено {} событий", result.size());
         return result;
     }
@@ -381,7 +398,7 @@ public class EventServiceImpl implements EventService {
                 .ip(userIp)
                 .timestamp(LocalDateTime.now())
                 .build();
-        statsClient.addHit(hitDto);
+        addHit(hitDto);
         return addConfirmedRequestsAndViews(eventMapper.toEventFullDto(event));
     }
 
@@ -430,40 +447,27 @@ public class EventServiceImpl implements EventService {
                 requestRepository.countByEventIdAndStatus(eventFullDto.getId(), RequestStatus.CONFIRMED));
         System.out.println("Добавлены подтверждённые запросы = " + eventFullDto.getConfirmedRequests());
 
-        // Получение просмотров
-        LocalDateTime start = LocalDateTime.now().minusYears(100);
-        List<String> uris = List.of("/events/" + eventFullDto.getId());
-        log.info("Сформированы параметры для statsClient");
-        log.info("start = " + start);
-        log.info("LocalDateTime.now() = " + LocalDateTime.now());
-        log.info("uris = " + uris);
-        List<ViewStatsDto> viewStatsDtoList = statsClient.getStats(start, LocalDateTime.now(), uris, true);
-        log.info("Из сервиса статистики получена следующая информация");
-        log.info("Получена статистика:");
-        for (ViewStatsDto stat : viewStatsDtoList) {
-            System.out.println(stat);
-        }
-        eventFullDto.setViews(viewStatsDtoList.isEmpty()
-                ? 0L
-                : viewStatsDtoList.getFirst().getHits());
+        // Получение просмотров: при включённом ViewBatchLoader запрос объединяется с одновременными запросами
+        // просмотров других событий
+        eventFullDto.setViews(viewCountCache.getViews("/events/" + eventFullDto.getId()));
+        log.info("Получено просмотров = {}", eventFullDto.getViews());
 
         return eventFullDto;
     }
 
-    private EventShortDto addShortConfirmedRequestsAndViews(EventShortDto eventShortDto) {
-
-        eventShortDto.setConfirmedRequests(
-                requestRepository.countByEventIdAndStatus(eventShortDto.getId(), RequestStatus.CONFIRMED));
-
-        List<String> uris = new ArrayList<>();
-        uris.add("/events/" + eventShortDto.getId());
-        List<ViewStatsDto> viewStatsDtoList = statsClient.getStats(LocalDateTime.now().minusYears(100), LocalDateTime.now(), uris, true);
-        if (viewStatsDtoList.isEmpty()) {
-            eventShortDto.setViews(0L);
-        } else {
-            eventShortDto.setViews(viewStatsDtoList.getFirst().getHits());
+    // Перегрузка или недоступность сервиса статистики (429, 5xx, сетевые ошибки) не должны ломать
+    // выдачу событий: хит теряется с предупреждением. Прочие отказы - ошибка клиента, она не глушится
+    private void addHit(EndpointHitDto hitDto) {
+        try {
+            hitReporter.report(hitDto);
+        } catch (ClientException e) {
+            if (!HitSpool.isRetryable(e)) {
+                throw e;
+            }
+            log.warn("Сервис статистики отклонил хит, статус {}", e.getStatus());
+        } catch (RestClientException e) {
+            log.warn("Сервис статистики недоступен: {}", e.getMessage());
         }
-        return eventShortDto;
     }
 
     private void updateEventEntity(UpdateEventAdminRequest event, Event eventToUpdate) {
@@ -1,26 +1,35 @@
 DROP TABLE IF EXISTS users, categories, locations, events, compilations, requests, comments, compilations_events;
+DROP SEQUENCE IF EXISTS users_seq, categories_seq, locations_seq, events_seq, compilations_seq, requests_seq, comments_seq;
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS categories_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS locations_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS events_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS compilations_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS requests_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS comments_seq START WITH 1 INCREMENT BY 50;
 
 CREATE TABLE IF NOT EXISTS users(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL PRIMARY KEY UNIQUE,
+    id BIGINT NOT NULL PRIMARY KEY,
     name VARCHAR(250) NOT NULL,
     email VARCHAR(254) NOT NULL UNIQUE
 );
 
 CREATE TABLE IF NOT EXISTS categories(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL PRIMARY KEY UNIQUE,
+    id BIGINT NOT NULL PRIMARY KEY,
     name VARCHAR(50) NOT NULL UNIQUE
 );
 
 CREATE TABLE IF NOT EXISTS locations
 (
-    id  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id  BIGINT PRIMARY KEY,
     lat FLOAT NOT NULL,
     lon FLOAT NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS events
 (
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id                  BIGINT PRIMARY KEY,
     annotation          VARCHAR(2000) NOT NULL,
     category_id         BIGINT,
     created_on          TIMESTAMP WITHOUT TIME ZONE,
@@ -41,14 +50,14 @@ CREATE TABLE IF NOT EXISTS events
 
 CREATE TABLE IF NOT EXISTS compilations
 (
-    id     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id     BIGINT PRIMARY KEY,
     pinned BOOLEAN,
     title  VARCHAR(255) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS requests
 (
-    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id           BIGINT PRIMARY KEY,
     created      TIMESTAMP WITHOUT TIME ZONE,
     event_id     BIGINT,
     requester_id BIGINT,
@@ -59,7 +68,7 @@ CREATE TABLE IF NOT EXISTS requests
 
 CREATE TABLE IF NOT EXISTS comments
 (
-    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id             BIGINT PRIMARY KEY,
     created        TIMESTAMP WITHOUT TIME ZONE,
     event_id       BIGINT,
     commentator_id BIGINT,
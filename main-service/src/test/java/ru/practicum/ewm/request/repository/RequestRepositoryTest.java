@@ -0,0 +1,56 @@
+package ru.practicum.ewm.request.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import ru.practicum.ewm.request.dto.RequestStatus;
+import ru.practicum.ewm.request.model.Request;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Схема создаётся Hibernate: schema.sql написан для PostgreSQL
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=never",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class RequestRepositoryTest {
+    private static final int ROWS = 20;
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void saveAllInsertsRowsInJdbcBatches() {
+        List<Request> requests = IntStream.range(0, ROWS)
+                .mapToObj(i -> new Request(LocalDateTime.now(), null, null, RequestStatus.PENDING))
+                .toList();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        requestRepository.saveAll(requests);
+        entityManager.flush();
+
+        // Идентификаторы выдаются блоками по 50 из последовательности, строки вставляются одним пакетом:
+        // без пакетной вставки каждая строка готовила бы свой INSERT
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(ROWS);
+        assertThat(requestRepository.count()).isEqualTo(ROWS);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.ewm.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.service.StatsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Запись хитов через StatsService: одиночный /hit и пакет /hits. Синхронный режим записи,
+// в каждой операции - новые хиты по известным app и uri, как при обычной работе сервиса
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IngestBenchmark {
+    @Param({"1000000"})
+    private long hits;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private StatsFixture fixture;
+    private StatsService statsService;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = StatsFixture.start(hits);
+        statsService = fixture.bean(StatsService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void addHit() {
+        statsService.addHit(nextHit());
+    }
+
+    @Benchmark
+    public void addHits() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(nextHit());
+        }
+        statsService.addHits(batch);
+    }
+
+    private EndpointHitDto nextHit() {
+        return new EndpointHitDto(null, StatsFixture.app(1 + random.nextInt(2)),
+                StatsFixture.uri(1 + random.nextInt(1000)), StatsFixture.ip(random.nextInt(10_000)),
+                StatsFixture.START.plusSeconds(random.nextInt(365 * 24 * 60 * 60)));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.ewm.bench;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.StatsClient;
+import ru.practicum.ewm.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Веб-слой с тем же путём запроса, что GET /events/{id} основного сервиса без БД: хит и запрос просмотров
+// к сервису статистики синхронно через StatsClient. Режим потоков задаёт spring.threads.virtual.enabled
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@Import({StatsClient.class, LoadTestApp.EventController.class})
+public class LoadTestApp {
+    private static final LocalDateTime VIEWS_START = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @RestController
+    static class EventController {
+        private final StatsClient statsClient;
+
+        EventController(StatsClient statsClient) {
+            this.statsClient = statsClient;
+        }
+
+        @GetMapping("/events/{id}")
+        public long getEvent(@PathVariable long id) {
+            String uri = "/events/" + id;
+            statsClient.addHit(EndpointHitDto.builder()
+                    .app("ewm-main-service")
+                    .uri(uri)
+                    .ip("10.0.0.1")
+                    .timestamp(LocalDateTime.now())
+                    .build());
+            List<ViewStatsDto> views = statsClient.getStats(VIEWS_START, LocalDateTime.now(), List.of(uri), true);
+            return views.isEmpty() ? 0 : views.get(0).getHits();
+        }
+    }
+}
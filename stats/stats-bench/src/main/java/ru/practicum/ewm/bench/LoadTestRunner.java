@@ -0,0 +1,174 @@
+package ru.practicum.ewm.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Нагрузочный тест режима виртуальных потоков: LoadTestApp поочерёдно запускается на пуле платформенных потоков
+// Tomcat и на виртуальных потоках, connections клиентов держат по открытому соединению и шлют запросы подряд.
+// Сервис статистики заменён заглушкой с задержкой stubLatencyMs.
+// Запуск: java -cp benchmarks.jar ru.practicum.ewm.bench.LoadTestRunner [connections] [seconds] [stubLatencyMs],
+// по умолчанию 5000 соединений, 30 секунд и 20 мс. Клиенты, LoadTestApp и заглушка работают в одном процессе,
+// поэтому на соединение приходится до четырёх сокетов: нужен лимит открытых файлов (ulimit -n) не меньше
+// 4 * connections с запасом на jar и служебные файлы. Результаты с числом процессоров пишутся в load-result.json
+public final class LoadTestRunner {
+    private static final String RESULT_FILE = "load-result.json";
+    private static final int EVENTS = 10_000;
+    private static final int SOCKETS_PER_CONNECTION = 4;
+    private static final long RESERVED_FILES = 1024;
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long stubLatencyMs = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        checkFileLimit(connections);
+
+        List<Result> results = new ArrayList<>();
+        try (StubStatsServer stub = StubStatsServer.start(stubLatencyMs, connections * 2)) {
+            for (boolean virtualThreads : List.of(false, true)) {
+                results.add(run(stub, virtualThreads, connections, seconds));
+            }
+        }
+        results.forEach(result -> System.out.printf(
+                "%-8s %d соединений: %.0f запросов/с, ошибок %d, p50 %.1f мс, p99 %.1f мс, p99.9 %.1f мс, max %.1f мс%n",
+                result.mode(), result.connections(), result.throughput(), result.errors(), result.p50Ms(),
+                result.p99Ms(), result.p999Ms(), result.maxMs()));
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(RESULT_FILE), results);
+    }
+
+    // При нехватке дескрипторов запросы падают с "Too many open files" и попадают в ошибки, тест не прерывается
+    private static void checkFileLimit(int connections) {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean os) {
+            long needed = (long) SOCKETS_PER_CONNECTION * connections + RESERVED_FILES;
+            if (os.getMaxFileDescriptorCount() < needed) {
+                System.out.printf("Лимит открытых файлов %d меньше нужных %d, часть запросов завершится ошибкой%n",
+                        os.getMaxFileDescriptorCount(), needed);
+            }
+        }
+    }
+
+    private static Result run(StubStatsServer stub, boolean virtualThreads, int connections, int seconds)
+            throws InterruptedException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApp.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--stats-server.uri=" + stub.uri(),
+                        // Каждый запрос должен дойти до заглушки, а не присоединиться к чужому
+                        "--stats-server.single-flight.enabled=false",
+                        "--server.tomcat.max-connections=" + connections * 2,
+                        "--server.tomcat.accept-count=" + connections,
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        try {
+            String target = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            // Первая пятая часть времени - прогрев, её запросы не учитываются
+            return load(target, virtualThreads ? "virtual" : "platform", connections,
+                    Duration.ofSeconds(Math.max(1, seconds / 5)), Duration.ofSeconds(seconds));
+        } finally {
+            context.close();
+        }
+    }
+
+    private static Result load(String target, String mode, int connections, Duration warmup, Duration measurement)
+            throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + measurement.toNanos();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[connections][];
+        // Служебным задачам HttpClient нужен свой исполнитель: пул клиентов закрывается раньше, чем HttpClient
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(io)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            for (int i = 0; i < connections; i++) {
+                int client = i;
+                clients.submit(() -> {
+                    latencies[client] = requestUntil(httpClient, target, measureFrom, measureTo, errors,
+                            new SplittableRandom(client));
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(measurement.plus(warmup).toSeconds() + 60, TimeUnit.SECONDS);
+        }
+        long[] all = Arrays.stream(latencies)
+                .filter(Objects::nonNull)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        return new Result(mode, Runtime.getRuntime().availableProcessors(), connections, all.length, errors.get(), all.length / (double) measurement.toSeconds(),
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1.0));
+    }
+
+    // Запросы подряд до measureTo; возвращает задержки успешных ответов, начатых после measureFrom, в наносекундах
+    private static long[] requestUntil(HttpClient httpClient, String target, long measureFrom, long measureTo,
+                                       AtomicLong errors, SplittableRandom random) {
+        long[] values = new long[1024];
+        int size = 0;
+        long started;
+        while ((started = System.nanoTime()) < measureTo) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/events/" + random.nextInt(EVENTS)))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            boolean ok;
+            try {
+                ok = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (started < measureFrom) {
+                continue;
+            }
+            if (!ok) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = System.nanoTime() - started;
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    public record Result(String mode, int cpus, int connections, long requests, long errors, double throughput,
+                         double p50Ms, double p99Ms, double p999Ms, double maxMs) {
+    }
+}
@@ -0,0 +1,57 @@
+package ru.practicum.ewm.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.EndpointHitMapper;
+
+import java.util.concurrent.TimeUnit;
+
+// Преобразование хита в EndpointHitMapper: коды app и uri из словаря в памяти, упаковка ip
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+    private StatsFixture fixture;
+    private EndpointHitMapper mapper;
+    private EndpointHitDto hitDto;
+    private EndpointHit hit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = StatsFixture.start(0);
+        mapper = fixture.bean(EndpointHitMapper.class);
+        hitDto = new EndpointHitDto(null, StatsFixture.app(1), StatsFixture.uri(1), StatsFixture.ip(1),
+                StatsFixture.START);
+        hit = mapper.toHit(hitDto);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public EndpointHit toHit() {
+        return mapper.toHit(hitDto);
+    }
+
+    @Benchmark
+    public EndpointHitDto toHitDto() {
+        return mapper.toHitDto(hit);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.practicum.ewm.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.StatsBinaryCodec;
+import ru.practicum.ewm.ViewStatsDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация тел /hits и /stats: JSON (ObjectMapper с настройками Spring) и двоичный StatsBinaryCodec.
+// size - число хитов в пакете и строк статистики в ответе
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    private static final TypeReference<List<EndpointHitDto>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<ViewStatsDto>> STATS = new TypeReference<>() {
+    };
+
+    @Param({"1", "100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<EndpointHitDto> hitDtos;
+    private List<ViewStatsDto> statistics;
+    private byte[] hitsJson;
+    private byte[] statsJson;
+    private byte[] hitsBinary;
+    private byte[] statsBinary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        hitDtos = new ArrayList<>(size);
+        statistics = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hitDtos.add(new EndpointHitDto(null, StatsFixture.app(1 + i % 2), StatsFixture.uri(1 + i % 1000),
+                    StatsFixture.ip(i), StatsFixture.START.plusSeconds(i)));
+            statistics.add(new ViewStatsDto(StatsFixture.app(1 + i % 2), StatsFixture.uri(1 + i), (long) size - i));
+        }
+        hitsJson = objectMapper.writeValueAsBytes(hitDtos);
+        statsJson = objectMapper.writeValueAsBytes(statistics);
+        hitsBinary = writeHitsBinary();
+        statsBinary = writeStatsBinary();
+    }
+
+    @Benchmark
+    public byte[] writeHitsJson() throws IOException {
+        return objectMapper.writeValueAsBytes(hitDtos);
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> readHitsJson() throws IOException {
+        return objectMapper.readValue(hitsJson, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeStatsJson() throws IOException {
+        return objectMapper.writeValueAsBytes(statistics);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> readStatsJson() throws IOException {
+        return objectMapper.readValue(statsJson, STATS);
+    }
+
+    @Benchmark
+    public byte[] writeHitsBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeHits(hitDtos, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> readHitsBinary() throws IOException {
+        return StatsBinaryCodec.readHits(new ByteArrayInputStream(hitsBinary));
+    }
+
+    @Benchmark
+    public byte[] writeStatsBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeStats(statistics, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> readStatsBinary() throws IOException {
+        return StatsBinaryCodec.readStats(new ByteArrayInputStream(statsBinary));
+    }
+}
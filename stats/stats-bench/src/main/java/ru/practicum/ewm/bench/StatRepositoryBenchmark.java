@@ -0,0 +1,98 @@
+package ru.practicum.ewm.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.repository.StatRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Четыре формы запроса StatRepository по сырым хитам: все uri или список uri, хиты или уникальные ip.
+// Размер набора задаётся параметром hits (1M по умолчанию, большие наборы: -p hits=10000000,50000000
+// и -jvmArgs -Xmx..), span - длина периода в сутках от начала набора
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StatRepositoryBenchmark {
+    @Param({"1000000"})
+    private long hits;
+
+    @Param({"30", "365"})
+    private int span;
+
+    @Param({"10"})
+    private int uriCount;
+
+    private StatsFixture fixture;
+    private StatRepository statRepository;
+    private TransactionTemplate readOnly;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private List<Integer> uriIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = StatsFixture.start(hits);
+        statRepository = fixture.bean(StatRepository.class);
+        readOnly = new TransactionTemplate(fixture.bean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        start = StatsFixture.START;
+        end = start.plusDays(span).minusSeconds(1);
+        uriIds = fixture.uriIds(uriCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void getStats(Blackhole blackhole) {
+        consume(() -> statRepository.getStats(start, end), blackhole);
+    }
+
+    @Benchmark
+    public void getUniqueStats(Blackhole blackhole) {
+        consume(() -> statRepository.getUniqueStats(start, end), blackhole);
+    }
+
+    @Benchmark
+    public void getStatsWithUris(Blackhole blackhole) {
+        consume(() -> statRepository.getStatsWithUris(start, end, uriIds), blackhole);
+    }
+
+    @Benchmark
+    public void getUniqueStatsWithUris(Blackhole blackhole) {
+        consume(() -> statRepository.getUniqueStatsWithUris(start, end, uriIds), blackhole);
+    }
+
+    // Курсорный Stream читается внутри транзакции, как в StatsServiceImpl
+    private void consume(Supplier<Stream<StatCount>> query, Blackhole blackhole) {
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<StatCount> rows = query.get()) {
+                rows.forEach(blackhole::consume);
+            }
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.ewm.bench;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.ewm.StatServiceApp;
+import ru.practicum.ewm.dictionary.StatDictionary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Сервер статистики без веб-слоя на H2 в памяти с синтетическим набором хитов.
+// Хиты генерируются одним INSERT ... SELECT: apps приложений, uris uri, ips адресов IPv4,
+// равномерно по году с 2025-01-01; номер uri перемешивается, чтобы соседние хиты попадали в разные uri
+public final class StatsFixture implements AutoCloseable {
+    public static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private static final int APPS = 2;
+    private static final int URIS = 1000;
+    private static final int IPS = 10_000;
+    private static final long SECONDS = 365L * 24 * 60 * 60;
+
+    private final ConfigurableApplicationContext context;
+
+    private StatsFixture(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static StatsFixture start(long hits) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(StatServiceApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2")
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:stats_bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                                + "NON_KEYWORDS=VALUE;DB_CLOSE_DELAY=-1",
+                        // Измеряется запрос к БД, а не кэш результатов
+                        "stats.cache.enabled=false",
+                        "stats.parallel.enabled=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.type=WARN")
+                .run();
+        StatsFixture fixture = new StatsFixture(context);
+        fixture.seed(hits);
+        return fixture;
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // Первые count uri набора
+    public List<Integer> uriIds(int count) {
+        return bean(JdbcTemplate.class).queryForList("SELECT id FROM stat_uri ORDER BY id LIMIT ?", Integer.class,
+                count);
+    }
+
+    public static String uri(int index) {
+        return "/events/" + index;
+    }
+
+    public static String app(int index) {
+        return "ewm-main-service-" + index;
+    }
+
+    public static String ip(int index) {
+        return "10." + (index >>> 16 & 0xFF) + "." + (index >>> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    private void seed(long hits) {
+        JdbcTemplate jdbcTemplate = bean(JdbcTemplate.class);
+        jdbcTemplate.batchUpdate("INSERT INTO stat_app (id, value) VALUES (?, ?)",
+                IntStream.rangeClosed(1, APPS).mapToObj(i -> new Object[]{i, app(i)}).toList());
+        jdbcTemplate.batchUpdate("INSERT INTO stat_uri (id, value) VALUES (?, ?)",
+                IntStream.rangeClosed(1, URIS).mapToObj(i -> new Object[]{i, uri(i)}).toList());
+        jdbcTemplate.execute("ALTER TABLE stat_app ALTER COLUMN id RESTART WITH " + (APPS + 1));
+        jdbcTemplate.execute("ALTER TABLE stat_uri ALTER COLUMN id RESTART WITH " + (URIS + 1));
+        if (hits > 0) {
+            jdbcTemplate.update("INSERT INTO statistic (id, app_id, uri_id, ip, timestamp) "
+                            + "SELECT n, 1 + MOD(n, ?), 1 + MOD(n * 7919, ?), "
+                            + "CAST(CAST(167772160 + MOD(n * 104729, ?) AS INTEGER) AS BINARY VARYING), "
+                            + "DATEADD(SECOND, MOD(n * 15485863, ?), CAST(? AS TIMESTAMP)) "
+                            + "FROM SYSTEM_RANGE(1, ?) AS r(n)",
+                    APPS, URIS, IPS, SECONDS, START, hits);
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE statistic_seq RESTART WITH " + (hits + 1));
+        bean(StatDictionary.class).load();
+    }
+}
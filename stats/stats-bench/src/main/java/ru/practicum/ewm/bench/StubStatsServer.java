@@ -0,0 +1,69 @@
+package ru.practicum.ewm.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Заглушка сервиса статистики для нагрузочного теста: /hit отвечает 201, /stats - одной строкой статистики,
+// оба после задержки latencyMs, имитирующей запрос к БД. Каждый запрос обрабатывается в своём
+// виртуальном потоке, чтобы заглушка не ограничивала пропускную способность проверяемого сервиса
+public final class StubStatsServer implements AutoCloseable {
+    private static final byte[] STATS = "[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"hits\":42}]"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMs;
+
+    private StubStatsServer(HttpServer server, ExecutorService executor, long latencyMs) {
+        this.server = server;
+        this.executor = executor;
+        this.latencyMs = latencyMs;
+    }
+
+    public static StubStatsServer start(long latencyMs, int backlog) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), backlog);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        StubStatsServer stub = new StubStatsServer(server, executor, latencyMs);
+        server.createContext("/hit", exchange -> stub.respond(exchange, 201, null));
+        server.createContext("/stats", exchange -> stub.respond(exchange, 200, STATS));
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    public String uri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        try (exchange; InputStream request = exchange.getRequestBody()) {
+            request.readAllBytes();
+            Thread.sleep(latencyMs);
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream response = exchange.getResponseBody()) {
+                response.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
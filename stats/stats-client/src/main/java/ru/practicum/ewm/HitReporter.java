@@ -0,0 +1,186 @@
+package ru.practicum.ewm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Отправка хитов в сервис статистики. В асинхронном режиме report только ставит хит в ограниченную
+// очередь без блокировок, а фоновый поток отправляет накопленное пакетами через /hits: задержка и отказы
+// сервиса статистики не влияют на обработку запроса. При заполненной очереди хит отбрасывается.
+// Без асинхронного режима хит отправляется сразу в вызывающем потоке, ошибки передаются вызывающему.
+// Если включено хранилище HitSpool, хиты, которые сервис статистики не принял из-за недоступности
+// или перегрузки, а также не поместившиеся в очередь, сохраняются на диск и отправляются позже
+@Slf4j
+@Component
+public class HitReporter {
+    private final StatsClient statsClient;
+    private final HitSpool hitSpool;
+    private final boolean async;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final boolean virtualThreads;
+
+    private final Queue<EndpointHitDto> queue = new ConcurrentLinkedQueue<>();
+    // Размер ConcurrentLinkedQueue считается обходом, поэтому глубина очереди ведётся отдельно
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Counter sent;
+    private final Counter dropped;
+    private final Counter spooled;
+    private final Counter failed;
+    private final DistributionSummary batchSizes;
+    private final Timer sendLatency;
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public HitReporter(StatsClient statsClient,
+                       HitSpool hitSpool,
+                       ObjectProvider<MeterRegistry> meterRegistry,
+                       @Value("${stats-server.async.enabled:false}") boolean async,
+                       @Value("${stats-server.async.capacity:10000}") int capacity,
+                       @Value("${stats-server.async.batch-size:200}") int batchSize,
+                       @Value("${stats-server.async.flush-interval-ms:100}") long flushIntervalMs,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.statsClient = statsClient;
+        this.hitSpool = hitSpool;
+        this.async = async;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.virtualThreads = virtualThreads;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("stats.client.queue.depth", depth, AtomicInteger::get)
+                .description("Хиты в очереди на отправку")
+                .register(registry);
+        this.sent = hitCounter(registry, "sent");
+        this.dropped = hitCounter(registry, "dropped");
+        this.spooled = hitCounter(registry, "spooled");
+        this.failed = hitCounter(registry, "failed");
+        this.batchSizes = DistributionSummary.builder("stats.client.batch.size")
+                .description("Число хитов в отправленном пакете")
+                .register(registry);
+        this.sendLatency = Timer.builder("stats.client.send.latency")
+                .description("Время отправки пакета хитов")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        sender = builder.name("stats-hit-sender").start(this::sendLoop);
+    }
+
+    public void report(EndpointHitDto hitDto) {
+        if (!async) {
+            try {
+                statsClient.addHit(hitDto);
+            } catch (RuntimeException e) {
+                if (!HitSpool.isRetryable(e) || !hitSpool.append(List.of(hitDto))) {
+                    throw e;
+                }
+                spooled.increment();
+            }
+            return;
+        }
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            if (hitSpool.append(List.of(hitDto))) {
+                spooled.increment();
+            } else {
+                dropped.increment();
+                log.debug("Очередь хитов заполнена, хит {} отброшен", hitDto.getUri());
+            }
+            return;
+        }
+        queue.offer(hitDto);
+        if (depth.get() >= batchSize) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    // Оставшиеся хиты отправляются при остановке приложения
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(sender);
+        sender.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void sendLoop() {
+        while (running || !queue.isEmpty()) {
+            List<EndpointHitDto> batch = drain();
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+            send(batch);
+            // Неполный пакет - очередь разобрана, следующий собирается не раньше чем через flush-interval
+            if (batch.size() < batchSize && running) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+    }
+
+    private List<EndpointHitDto> drain() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        EndpointHitDto hitDto;
+        while (batch.size() < batchSize && (hitDto = queue.poll()) != null) {
+            batch.add(hitDto);
+        }
+        depth.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        batchSizes.record(batch.size());
+        long startedAt = System.nanoTime();
+        try {
+            statsClient.addHits(batch);
+            sent.increment(batch.size());
+        } catch (RuntimeException e) {
+            // Фоновый поток не должен завершиться из-за ошибки отправки
+            if (HitSpool.isRetryable(e) && hitSpool.append(batch)) {
+                spooled.increment(batch.size());
+                log.debug("Сервис статистики недоступен, {} хитов сохранены на диск", batch.size());
+            } else {
+                failed.increment(batch.size());
+                log.warn("Не удалось отправить {} хитов: {}", batch.size(), e.getMessage());
+            }
+        } finally {
+            sendLatency.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Counter hitCounter(MeterRegistry registry, String result) {
+        return Counter.builder("stats.client.hits")
+                .description("Хиты, переданные в асинхронную отправку")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,381 @@
+package ru.practicum.ewm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Хранилище на диске для хитов, которые не удалось доставить в сервис статистики.
+// Хиты дописываются в конец файла-сегмента записями "длина, CRC32, пакет в формате StatsBinaryCodec";
+// сегмент закрывается по достижении segment-size-bytes, и при каждом запуске пишется новый сегмент.
+// Сброс на диск (fsync) - раз в fsync-interval-ms: при падении ОС теряются хиты не старше этого интервала.
+// Фоновый поток раз в replay-interval-ms отправляет закрытые сегменты пакетами через /hits, начиная
+// с самого старого. Позиция отправки сохраняется после каждого пакета, поэтому после перезапуска
+// повторно может уйти не больше одного пакета, а отправленный сегмент удаляется
+@Slf4j
+@Component
+public class HitSpool {
+    private static final String SEGMENT_PREFIX = "hits-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CHECKPOINT = "replay.pos";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final StatsClient statsClient;
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final int batchSize;
+    private final long fsyncIntervalMs;
+    private final long replayIntervalMs;
+
+    private final Lock lock = new ReentrantLock();
+    private final AtomicLong spooledBytes = new AtomicLong();
+    private final Counter replayed;
+    private final Counter discarded;
+
+    private ScheduledExecutorService executor;
+    // Текущий сегмент для записи; защищён lock
+    private FileChannel active;
+    private long activeSeq = -1;
+    private long nextSeq;
+    private boolean dirty;
+
+    public HitSpool(StatsClient statsClient,
+                    ObjectProvider<MeterRegistry> meterRegistry,
+                    @Value("${stats-server.spool.enabled:false}") boolean enabled,
+                    @Value("${stats-server.spool.dir:${java.io.tmpdir}/ewm-stats-spool}") String directory,
+                    @Value("${stats-server.spool.segment-size-bytes:16777216}") long segmentBytes,
+                    @Value("${stats-server.spool.max-bytes:1073741824}") long maxBytes,
+                    @Value("${stats-server.async.batch-size:200}") int batchSize,
+                    @Value("${stats-server.spool.fsync-interval-ms:1000}") long fsyncIntervalMs,
+                    @Value("${stats-server.spool.replay-interval-ms:5000}") long replayIntervalMs) {
+        this.statsClient = statsClient;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.batchSize = batchSize;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.replayIntervalMs = replayIntervalMs;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("stats.client.spool.bytes", spooledBytes, AtomicLong::get)
+                .description("Объём неотправленных хитов на диске")
+                .register(registry);
+        this.replayed = Counter.builder("stats.client.spool.replayed")
+                .description("Хиты, отправленные из хранилища на диске")
+                .register(registry);
+        this.discarded = Counter.builder("stats.client.spool.discarded")
+                .description("Хиты, не принятые в хранилище или отклонённые сервисом при повторной отправке")
+                .register(registry);
+    }
+
+    // Стоит ли сохранять хиты после такой ошибки: сервис недоступен или перегружен.
+    // Прочие ответы 4xx повторная отправка не исправит
+    public static boolean isRetryable(RuntimeException e) {
+        if (e instanceof ClientException clientException) {
+            Integer status = clientException.getStatus();
+            return status != null && (status == 429 || status >= 500);
+        }
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        for (Path segment : segments) {
+            spooledBytes.addAndGet(Files.size(segment));
+        }
+        nextSeq = segments.isEmpty() ? 0 : seq(segments.getLast()) + 1;
+        if (!segments.isEmpty()) {
+            log.info("В {} найдено {} сегментов неотправленных хитов, {} байт", directory, segments.size(),
+                    spooledBytes.get());
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-hit-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::fsync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::replay, replayIntervalMs, replayIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // false - хранилище выключено, переполнено или недоступно для записи, хиты не сохранены
+    public boolean append(List<EndpointHitDto> hitDtos) {
+        if (!enabled || hitDtos.isEmpty()) {
+            return false;
+        }
+        byte[] payload;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StatsBinaryCodec.writeHits(hitDtos, out);
+            payload = out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        if (spooledBytes.get() + HEADER_BYTES + payload.length > maxBytes) {
+            discarded.increment(hitDtos.size());
+            log.warn("Хранилище неотправленных хитов заполнено, отброшено {} хитов", hitDtos.size());
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        lock.lock();
+        try {
+            if (active != null && active.size() >= segmentBytes) {
+                seal();
+            }
+            if (active == null) {
+                activeSeq = nextSeq++;
+                active = FileChannel.open(segment(activeSeq), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            }
+            while (record.hasRemaining()) {
+                active.write(record);
+            }
+            dirty = true;
+            spooledBytes.addAndGet(HEADER_BYTES + payload.length);
+            return true;
+        } catch (IOException e) {
+            discarded.increment(hitDtos.size());
+            log.error("Не удалось сохранить {} хитов в {}: {}", hitDtos.size(), directory, e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        lock.lock();
+        try {
+            seal();
+        } catch (IOException e) {
+            log.error("Не удалось закрыть сегмент неотправленных хитов: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fsync() {
+        lock.lock();
+        try {
+            if (dirty) {
+                active.force(false);
+                dirty = false;
+            }
+        } catch (IOException e) {
+            log.error("Не удалось сбросить на диск неотправленные хиты: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вызывается по расписанию; доступен в пакете для тестов
+    void replay() {
+        try {
+            List<Path> segments = segments();
+            for (Path segment : segments) {
+                long seq = seq(segment);
+                // activeSeq читается только под lock, иначе можно начать отправку сегмента, в который ещё пишут
+                if (!sealActive(seq)) {
+                    return;
+                }
+                if (!replaySegment(segment, seq)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Не удалось прочитать неотправленные хиты из {}: {}", directory, e.getMessage());
+        } catch (RuntimeException e) {
+            // Ошибка не должна отменить следующие запуски по расписанию
+            log.error("Ошибка повторной отправки хитов", e);
+        }
+    }
+
+    // true - сегмент можно отправлять: он уже закрыт или текущий сегмент закрывается сейчас;
+    // false - это пустой текущий сегмент, он ждёт записей
+    private boolean sealActive(long seq) throws IOException {
+        lock.lock();
+        try {
+            if (activeSeq != seq || active == null) {
+                return true;
+            }
+            if (active.size() == 0) {
+                return false;
+            }
+            seal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // true - сегмент отправлен целиком и удалён; false - сервис недоступен, отправка продолжится позже
+    private boolean replaySegment(Path segment, long seq) throws IOException {
+        long offset = checkpoint(seq);
+        try (InputStream file = Files.newInputStream(segment)) {
+            file.skipNBytes(offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+            List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+            long position = offset;
+            while (true) {
+                SpoolRecord record = readRecord(in, segment);
+                if (record != null) {
+                    batch.addAll(record.hitDtos());
+                    position += record.bytes();
+                }
+                if (batch.size() >= batchSize || (record == null && !batch.isEmpty())) {
+                    if (!send(batch)) {
+                        return false;
+                    }
+                    saveCheckpoint(seq, position);
+                    batch.clear();
+                }
+                if (record == null) {
+                    break;
+                }
+            }
+        }
+        long size = Files.size(segment);
+        Files.delete(segment);
+        Files.deleteIfExists(directory.resolve(CHECKPOINT));
+        spooledBytes.addAndGet(-size);
+        log.info("Неотправленные хиты из {} доставлены в сервис статистики", segment.getFileName());
+        return true;
+    }
+
+    // null - конец сегмента; недописанная или повреждённая запись в конце считается концом сегмента
+    private SpoolRecord readRecord(DataInputStream in, Path segment) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            byte[] payload = in.readNBytes(length);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (payload.length != length || (int) crc.getValue() != checksum) {
+                log.warn("Повреждённая запись в {}, остаток сегмента пропущен", segment.getFileName());
+                return null;
+            }
+            return new SpoolRecord(StatsBinaryCodec.readHits(new ByteArrayInputStream(payload)), HEADER_BYTES + length);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private boolean send(List<EndpointHitDto> batch) {
+        try {
+            statsClient.addHits(batch);
+            replayed.increment(batch.size());
+            return true;
+        } catch (RuntimeException e) {
+            if (isRetryable(e)) {
+                log.debug("Сервис статистики недоступен, повторная отправка отложена: {}", e.getMessage());
+                return false;
+            }
+            discarded.increment(batch.size());
+            log.warn("Сервис статистики отклонил {} сохранённых хитов: {}", batch.size(), e.getMessage());
+            return true;
+        }
+    }
+
+    private void seal() throws IOException {
+        if (active == null) {
+            return;
+        }
+        active.force(false);
+        active.close();
+        active = null;
+        activeSeq = -1;
+        dirty = false;
+    }
+
+    private long checkpoint(long seq) throws IOException {
+        Path path = directory.resolve(CHECKPOINT);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        String[] parts = Files.readString(path, StandardCharsets.UTF_8).trim().split(" ");
+        return Long.parseLong(parts[0]) == seq ? Long.parseLong(parts[1]) : 0;
+    }
+
+    // Позиция пишется во временный файл и атомарно подменяет прежнюю
+    private void saveCheckpoint(long seq, long offset) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temp, seq + " " + offset, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segment(long seq) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%019d", seq) + SEGMENT_SUFFIX);
+    }
+
+    private static long seq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record SpoolRecord(List<EndpointHitDto> hitDtos, long bytes) {
+    }
+}
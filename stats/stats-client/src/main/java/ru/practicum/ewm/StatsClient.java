@@ -1,18 +1,36 @@
 package ru.practicum.ewm;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 @Component
 @Slf4j
@@ -22,11 +40,30 @@ public class StatsClient {
 
     private String serverUri;
     private RestClient restClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MediaType binaryType = MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE);
+    // Двоичный формат StatsBinaryCodec вместо JSON для /hit, /hits и /stats
+    private final boolean binary;
+    // Одинаковые одновременные запросы /stats выполняются одним HTTP-вызовом, остальные ждут его результата
+    private final boolean singleFlight;
+    private final Map<String, CompletableFuture<List<ViewStatsDto>>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter collapsed;
 
     @Autowired
-    public StatsClient(@Value("${stats-server.uri:http://stats-server:9090}") String serverUri) {
+    public StatsClient(@Value("${stats-server.uri:http://stats-server:9090}") String serverUri,
+                       @Value("${stats-server.binary:false}") boolean binary,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                       @Value("${stats-server.single-flight.enabled:true}") boolean singleFlight,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
         this.serverUri = serverUri;
-        this.restClient = RestClient.create();
+        this.binary = binary;
+        this.restClient = virtualThreads ? virtualThreadClient() : RestClient.create();
+        this.singleFlight = singleFlight;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.executed = statsRequestCounter(registry, "executed");
+        this.collapsed = statsRequestCounter(registry, "collapsed");
     }
 
     public void addHit(EndpointHitDto hitDto) {
@@ -35,11 +72,41 @@ public class StatsClient {
                 .path("/hit")
                 .toUriString();
 
-        restClient.post()
-                .uri(uri)
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(hitDto)
-                .retrieve()
+        RestClient.RequestBodySpec spec = restClient.post().uri(uri);
+        if (binary) {
+            spec.contentType(binaryType).body(encode(out -> StatsBinaryCodec.writeHit(hitDto, out)));
+        } else {
+            spec.contentType(MediaType.APPLICATION_JSON).body(hitDto);
+        }
+        spec.retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .toBodilessEntity();
+    }
+
+    public void addHits(List<EndpointHitDto> hitDtos) {
+        String uri = UriComponentsBuilder.newInstance()
+                .uri(URI.create(serverUri))
+                .path("/hits")
+                .toUriString();
+
+        RestClient.RequestBodySpec spec = restClient.post().uri(uri);
+        if (binary) {
+            spec.contentType(binaryType).body(encode(out -> StatsBinaryCodec.writeHits(hitDtos, out)));
+        } else {
+            spec.contentType(MediaType.APPLICATION_JSON).body(hitDtos);
+        }
+        spec.retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
                     throw new ClientException(
                             response.getStatusCode().value(),
@@ -65,6 +132,114 @@ public class StatsClient {
                 .queryParam("unique", unique)
                 .toUriString();
 
+        if (!singleFlight) {
+            executed.increment();
+            return fetchStats(uriWithParams);
+        }
+        CompletableFuture<List<ViewStatsDto>> call = new CompletableFuture<>();
+        CompletableFuture<List<ViewStatsDto>> running = inFlight.putIfAbsent(uriWithParams, call);
+        if (running != null) {
+            collapsed.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        executed.increment();
+        try {
+            // Ведущий и ожидающие получают один и тот же неизменяемый список и не читают его во время чужой записи.
+            // Строки статистики тоже общие, вызывающие их не изменяют
+            List<ViewStatsDto> statistics = List.copyOf(fetchStats(uriWithParams));
+            call.complete(statistics);
+            return statistics;
+        } catch (Throwable e) {
+            // Ожидающие не должны зависнуть ни при какой ошибке
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Запрос, начатый после получения ответа, снова идёт на сервер
+            inFlight.remove(uriWithParams, call);
+        }
+    }
+
+    private List<ViewStatsDto> fetchStats(String uriWithParams) {
+        if (binary) {
+            return restClient.get()
+                    .uri(uriWithParams)
+                    .accept(binaryType)
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new ClientException(
+                                    response.getStatusCode().value(),
+                                    response.getBody().toString()
+                            );
+                        }
+                        return StatsBinaryCodec.readStats(response.getBody());
+                    });
+        }
+
+        return restClient.get()
+                .uri(uriWithParams).retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .body(new ParameterizedTypeReference<>() {
+                });
+    }
+
+    // Число просмотров каждого (app, uri) по интервалам bucket: series[i].hits[j] - интервал start + j * bucket
+    public TimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                       TimeSeriesBucket bucket, Boolean unique) {
+        String uriWithParams = UriComponentsBuilder.newInstance()
+                .uri(URI.create(serverUri))
+                .path("/stats/timeseries")
+                .queryParam("start", start)
+                .queryParam("end", end)
+                .queryParam("uris", uris)
+                .queryParam("bucket", bucket)
+                .queryParam("unique", unique)
+                .toUriString();
+
+        return restClient.get()
+                .uri(uriWithParams).retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .onStatus(HttpStatusCode::is5xxServerError, (request, response) -> {
+                    throw new ClientException(
+                            response.getStatusCode().value(),
+                            response.getBody().toString()
+                    );
+                })
+                .body(TimeSeriesDto.class);
+    }
+
+    // Просмотры uri за последнюю минуту, 15 минут и час; сервер отвечает из памяти, без обращения к БД.
+    // Uri без хитов за последний час в ответ не попадают
+    public List<LiveStatsDto> getLiveStats(List<String> uris) {
+        String uriWithParams = UriComponentsBuilder.newInstance()
+                .uri(URI.create(serverUri))
+                .path("/stats/live")
+                .queryParam("uris", uris)
+                .queryParam("limit", uris == null || uris.isEmpty() ? null : uris.size())
+                .toUriString();
+
         return restClient.get()
                 .uri(uriWithParams).retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, (request, response) -> {
@@ -82,4 +257,67 @@ public class StatsClient {
                 .body(new ParameterizedTypeReference<>() {
                 });
     }
+
+    // Потоковое чтение статистики в формате NDJSON: строки передаются в consumer по мере получения,
+    // ответ целиком в памяти не собирается
+    public void getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                         Consumer<ViewStatsDto> consumer) {
+        String uriWithParams = UriComponentsBuilder.newInstance()
+                .uri(URI.create(serverUri))
+                .path("/stats")
+                .queryParam("start", start)
+                .queryParam("end", end)
+                .queryParam("uris", uris)
+                .queryParam("unique", unique)
+                .toUriString();
+
+        restClient.get()
+                .uri(uriWithParams)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange((request, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        throw new ClientException(
+                                response.getStatusCode().value(),
+                                response.getBody().toString()
+                        );
+                    }
+                    try (MappingIterator<ViewStatsDto> rows = objectMapper.readerFor(ViewStatsDto.class)
+                            .readValues(response.getBody())) {
+                        rows.forEachRemaining(consumer);
+                    }
+                    return null;
+                });
+    }
+
+    // Вызовы блокируют вызывающий виртуальный поток, а служебные задачи HttpClient
+    // выполняются в виртуальных потоках вместо пула платформенных
+    private static RestClient virtualThreadClient() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        return RestClient.builder()
+                .requestFactory(new JdkClientHttpRequestFactory(httpClient))
+                .build();
+    }
+
+    private static Counter statsRequestCounter(MeterRegistry registry, String result) {
+        return Counter.builder("stats.client.stats.requests")
+                .description("Вызовы getStats: выполненные и присоединённые к такому же выполняющемуся запросу")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private byte[] encode(BinaryWriter writer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private interface BinaryWriter {
+        void write(OutputStream out) throws IOException;
+    }
 }
@@ -0,0 +1,207 @@
+package ru.practicum.ewm;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Загрузка числа просмотров (уникальных ip за всё время) по uri события с объединением запросов.
+// Uri, запрошенные из разных потоков в течение window-micros после первого из них, собираются в пакет,
+// пакет отправляется одним вызовом /stats с объединением uri, и результат раздаётся ожидающим.
+// Пакет отправляется раньше, если набралось max-keys uri. Одинаковые uri в пакете запрашиваются один раз
+@Component
+public class ViewBatchLoader {
+    // Начало периода "за всё время", как в запросах просмотров main-service
+    private static final long ALL_TIME_YEARS = 100;
+
+    private final StatsClient statsClient;
+    private final boolean enabled;
+    private final long windowMicros;
+    private final int maxKeys;
+    private final boolean virtualThreads;
+
+    private final Lock lock = new ReentrantLock();
+    private final DistributionSummary batchKeys;
+    private final DistributionSummary batchCallers;
+
+    private Batch pending;
+    private ScheduledExecutorService timer;
+    private ExecutorService dispatcher;
+
+    public ViewBatchLoader(StatsClient statsClient,
+                           ObjectProvider<MeterRegistry> meterRegistry,
+                           @Value("${stats-server.views-batch.enabled:false}") boolean enabled,
+                           @Value("${stats-server.views-batch.window-micros:1000}") long windowMicros,
+                           @Value("${stats-server.views-batch.max-keys:100}") int maxKeys,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.statsClient = statsClient;
+        this.enabled = enabled;
+        this.windowMicros = windowMicros;
+        this.maxKeys = maxKeys;
+        this.virtualThreads = virtualThreads;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.batchKeys = DistributionSummary.builder("stats.client.views.batch.keys")
+                .description("Число uri в одном запросе /stats")
+                .register(registry);
+        this.batchCallers = DistributionSummary.builder("stats.client.views.batch.lookups")
+                .description("Число запросов uri, обслуженных одним запросом /stats")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-views-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Запрос к серверу выполняется вне потока таймера, чтобы медленный ответ не задерживал следующие пакеты
+        dispatcher = Executors.newThreadPerTaskExecutor(virtualThreads
+                ? Thread.ofVirtual().name("stats-views-fetch-", 0).factory()
+                : Thread.ofPlatform().daemon().name("stats-views-fetch-", 0).factory());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            dispatcher.shutdown();
+        }
+    }
+
+    // Просмотры uri; результат будет получен вместе с uri, запрошенными другими потоками
+    public CompletableFuture<Long> load(String uri) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(fetch(List.of(uri)).get(uri));
+        }
+        Batch full = null;
+        CompletableFuture<Long> future;
+        lock.lock();
+        try {
+            if (pending == null) {
+                Batch batch = new Batch();
+                timer.schedule(() -> flush(batch), windowMicros, TimeUnit.MICROSECONDS);
+                pending = batch;
+            }
+            pending.lookups++;
+            future = pending.futures.computeIfAbsent(uri, key -> new CompletableFuture<>());
+            if (pending.futures.size() >= maxKeys) {
+                full = pending;
+                pending = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return future;
+    }
+
+    // Просмотры по каждому из uri; uri без хитов - 0
+    public Map<String, Long> loadAll(Collection<String> uris) {
+        Collection<String> distinct = new LinkedHashSet<>(uris);
+        // Пустой список uri сервер понимает как "все uri"
+        if (distinct.isEmpty()) {
+            return new HashMap<>();
+        }
+        // Набор не меньше пакета отправляется сразу, ожидать другие запросы для него незачем
+        if (!enabled || distinct.size() >= maxKeys) {
+            return fetch(distinct);
+        }
+        Map<String, CompletableFuture<Long>> futures = new HashMap<>();
+        distinct.forEach(uri -> futures.put(uri, load(uri)));
+        Map<String, Long> views = new HashMap<>();
+        try {
+            futures.forEach((uri, future) -> views.put(uri, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return views;
+    }
+
+    private void flush(Batch batch) {
+        lock.lock();
+        try {
+            // Пакет уже отправлен при заполнении
+            if (pending != batch) {
+                return;
+            }
+            pending = null;
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(Batch batch) {
+        batchKeys.record(batch.futures.size());
+        batchCallers.record(batch.lookups);
+        try {
+            dispatcher.execute(() -> {
+                try {
+                    Map<String, Long> views = fetch(batch.futures.keySet());
+                    batch.futures.forEach((uri, future) -> future.complete(views.get(uri)));
+                } catch (Throwable e) {
+                    // Ожидающие не должны зависнуть ни при какой ошибке, она передаётся каждому из них
+                    fail(batch, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается
+            fail(batch, e);
+        }
+    }
+
+    private static void fail(Batch batch, Throwable e) {
+        batch.futures.values().forEach(future -> future.completeExceptionally(e));
+    }
+
+    private Map<String, Long> fetch(Collection<String> uris) {
+        // Конец периода округляется вверх до секунды: одновременные запросы одних uri совпадают
+        // и объединяются StatsClient в один вызов, а хиты текущей секунды в период попадают
+        LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        List<ViewStatsDto> statistics = statsClient.getStats(end.minusYears(ALL_TIME_YEARS), end, List.copyOf(uris),
+                true);
+        Map<String, Long> views = new HashMap<>();
+        uris.forEach(uri -> views.put(uri, 0L));
+        for (ViewStatsDto viewStats : statistics) {
+            views.computeIfPresent(viewStats.getUri(), (uri, count) -> count + viewStats.getHits());
+        }
+        return views;
+    }
+
+    // Изменяется только под lock, пока пакет ожидает отправки
+    private static final class Batch {
+        private final Map<String, CompletableFuture<Long>> futures = new HashMap<>();
+        private int lookups;
+    }
+}
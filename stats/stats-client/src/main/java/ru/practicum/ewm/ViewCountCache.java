@@ -0,0 +1,202 @@
+package ru.practicum.ewm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Кэш числа просмотров (уникальных ip за всё время) по uri события.
+// Значение моложе ttl-ms отдаётся как есть. Более старое, но моложе max-staleness-ms, тоже отдаётся сразу,
+// а uri ставится в очередь обновления: фоновый поток раз в refresh-interval-ms запрашивает накопленные uri
+// пакетами до refresh-batch-size одним вызовом /stats. Отсутствующие и слишком старые значения
+// загружаются в вызывающем потоке через ViewBatchLoader. При переполнении вытесняется uri,
+// к которому дольше всего не обращались
+@Slf4j
+@Component
+public class ViewCountCache {
+    private final ViewBatchLoader viewBatchLoader;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long maxStalenessNanos;
+    private final int maxEntries;
+    private final int refreshBatchSize;
+    private final long refreshIntervalMs;
+
+    private final Lock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> refreshQueue = ConcurrentHashMap.newKeySet();
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Timer staleness;
+
+    private ScheduledExecutorService refresher;
+
+    public ViewCountCache(ViewBatchLoader viewBatchLoader,
+                          ObjectProvider<MeterRegistry> meterRegistry,
+                          @Value("${stats-server.views-cache.enabled:false}") boolean enabled,
+                          @Value("${stats-server.views-cache.ttl-ms:1000}") long ttlMs,
+                          @Value("${stats-server.views-cache.max-staleness-ms:30000}") long maxStalenessMs,
+                          @Value("${stats-server.views-cache.max-entries:10000}") int maxEntries,
+                          @Value("${stats-server.views-cache.refresh-batch-size:100}") int refreshBatchSize,
+                          @Value("${stats-server.views-cache.refresh-interval-ms:50}") long refreshIntervalMs) {
+        this.viewBatchLoader = viewBatchLoader;
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(maxStalenessMs, ttlMs));
+        this.maxEntries = maxEntries;
+        this.refreshBatchSize = refreshBatchSize;
+        this.refreshIntervalMs = refreshIntervalMs;
+
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("stats.client.views.cache.size", this, ViewCountCache::size)
+                .description("Число uri в кэше просмотров")
+                .register(registry);
+        Gauge.builder("stats.client.views.cache.refresh.queue", refreshQueue, Set::size)
+                .description("Uri, ожидающие фонового обновления")
+                .register(registry);
+        this.hits = lookupCounter(registry, "hit");
+        this.staleHits = lookupCounter(registry, "stale");
+        this.misses = lookupCounter(registry, "miss");
+        this.staleness = Timer.builder("stats.client.views.cache.staleness")
+                .description("Возраст отданных из кэша значений")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-views-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    public long getViews(String uri) {
+        return getViews(List.of(uri)).get(uri);
+    }
+
+    // Просмотры по каждому из uri; uri без хитов - 0
+    public Map<String, Long> getViews(Collection<String> uris) {
+        if (!enabled) {
+            return viewBatchLoader.loadAll(uris);
+        }
+        long now = System.nanoTime();
+        Map<String, Long> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        lock.lock();
+        try {
+            for (String uri : new LinkedHashSet<>(uris)) {
+                Entry entry = entries.get(uri);
+                long age = entry == null ? Long.MAX_VALUE : now - entry.loadedAt();
+                if (age > maxStalenessNanos) {
+                    missing.add(uri);
+                    continue;
+                }
+                result.put(uri, entry.views());
+                staleness.record(age, TimeUnit.NANOSECONDS);
+                if (age > ttlNanos) {
+                    staleHits.increment();
+                    refreshQueue.add(uri);
+                } else {
+                    hits.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            result.putAll(loadAndStore(missing));
+        }
+        return result;
+    }
+
+    private void refresh() {
+        try {
+            while (!refreshQueue.isEmpty()) {
+                List<String> batch = new ArrayList<>(refreshBatchSize);
+                Iterator<String> iterator = refreshQueue.iterator();
+                while (batch.size() < refreshBatchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+                loadAndStore(batch);
+            }
+        } catch (RuntimeException e) {
+            // Прежние значения продолжают отдаваться до max-staleness-ms
+            log.warn("Не удалось обновить кэш просмотров: {}", e.getMessage());
+        }
+    }
+
+    private Map<String, Long> loadAndStore(Collection<String> uris) {
+        // Время загрузки берётся до запроса: хиты, пришедшие во время запроса, могли в ответ не попасть
+        long loadedAt = System.nanoTime();
+        Map<String, Long> views = viewBatchLoader.loadAll(uris);
+        lock.lock();
+        try {
+            views.forEach((uri, count) -> entries.put(uri, new Entry(count, loadedAt)));
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return views;
+    }
+
+    private int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("stats.client.views.cache")
+                .description("Обращения к кэшу просмотров по uri")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private record Entry(long views, long loadedAt) {
+    }
+}
@@ -0,0 +1,243 @@
+package ru.practicum.ewm;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Каждый хит пишется отдельной записью, пакет повторной отправки - две записи
+class HitSpoolTest {
+    private static final int BATCH_SIZE = 2;
+    private static final long LARGE_SEGMENT = 1 << 20;
+    private static final long HOUR_MS = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    private final StatsClient statsClient = mock(StatsClient.class);
+    // Пакеты, дошедшие до сервиса статистики
+    private final List<List<EndpointHitDto>> delivered = new ArrayList<>();
+    private final List<HitSpool> spools = new ArrayList<>();
+
+    @AfterEach
+    void stopSpools() {
+        spools.forEach(HitSpool::stop);
+    }
+
+    @Test
+    void fullSegmentIsSealedAndNextOneStarted() throws IOException {
+        acceptAll();
+        HitSpool spool = start(1);
+        List<EndpointHitDto> hitDtos = hits(3);
+
+        hitDtos.forEach(hitDto -> assertThat(spool.append(List.of(hitDto))).isTrue());
+
+        assertThat(segments()).hasSize(3);
+        spool.replay();
+        assertThat(flatten(delivered)).isEqualTo(hitDtos);
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void segmentsLeftByPreviousRunAreReplayedAfterRestart() throws IOException {
+        acceptAll();
+        List<EndpointHitDto> hitDtos = hits(3);
+        HitSpool previous = start(LARGE_SEGMENT);
+        hitDtos.forEach(hitDto -> previous.append(List.of(hitDto)));
+        previous.stop();
+        List<Path> left = segments();
+
+        HitSpool spool = start(LARGE_SEGMENT);
+        spool.append(hits(1));
+
+        // Новый запуск пишет в новый сегмент и не трогает оставшиеся от прошлого
+        assertThat(segments()).hasSize(2).startsWith(left.getFirst());
+        spool.replay();
+        assertThat(flatten(delivered)).startsWith(hitDtos.toArray(EndpointHitDto[]::new)).hasSize(4);
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void tornRecordAtSegmentEndIsSkipped() throws IOException {
+        acceptAll();
+        List<EndpointHitDto> hitDtos = hits(3);
+        HitSpool previous = start(LARGE_SEGMENT);
+        hitDtos.forEach(hitDto -> previous.append(List.of(hitDto)));
+        previous.stop();
+        // Запись оборвалась при падении: заголовок обещает 100 байт, дописано 10
+        Files.write(segments().getFirst(), ByteBuffer.allocate(18).putInt(100).putInt(0).array(),
+                StandardOpenOption.APPEND);
+
+        start(LARGE_SEGMENT).replay();
+
+        assertThat(flatten(delivered)).isEqualTo(hitDtos);
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void recordWithWrongChecksumEndsSegment() throws IOException {
+        acceptAll();
+        List<EndpointHitDto> hitDtos = hits(3);
+        HitSpool previous = start(LARGE_SEGMENT);
+        previous.append(List.of(hitDtos.get(0)));
+        Path segment = segments().getFirst();
+        long corruptedAt = Files.size(segment) + Integer.BYTES * 2L;
+        previous.append(List.of(hitDtos.get(1)));
+        previous.append(List.of(hitDtos.get(2)));
+        previous.stop();
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[(int) corruptedAt + 1] ^= 0x55;
+        Files.write(segment, bytes);
+
+        start(LARGE_SEGMENT).replay();
+
+        // Границы записей после повреждённой ненадёжны, поэтому остаток сегмента пропускается
+        assertThat(flatten(delivered)).containsExactly(hitDtos.get(0));
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void replayResumesFromCheckpointAfterRestart() throws IOException {
+        List<EndpointHitDto> hitDtos = hits(5);
+        HitSpool previous = start(LARGE_SEGMENT);
+        hitDtos.forEach(hitDto -> previous.append(List.of(hitDto)));
+        doAnswer(invocation -> deliver(invocation.getArgument(0)))
+                .doThrow(new ClientException(503, "Service Unavailable"))
+                .when(statsClient).addHits(anyList());
+
+        previous.replay();
+        previous.stop();
+        assertThat(flatten(delivered)).isEqualTo(hitDtos.subList(0, 2));
+
+        acceptAll();
+        start(LARGE_SEGMENT).replay();
+
+        assertThat(flatten(delivered)).isEqualTo(hitDtos);
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void lostResponseDuplicatesAtMostOneBatch() throws IOException {
+        List<EndpointHitDto> hitDtos = hits(5);
+        HitSpool previous = start(LARGE_SEGMENT);
+        hitDtos.forEach(hitDto -> previous.append(List.of(hitDto)));
+        // Второй пакет сервис принял, но ответ не дошёл: позиция отправки не сдвинулась
+        doAnswer(invocation -> deliver(invocation.getArgument(0)))
+                .doAnswer(invocation -> {
+                    deliver(invocation.getArgument(0));
+                    throw new ResourceAccessException("Read timed out");
+                })
+                .when(statsClient).addHits(anyList());
+
+        previous.replay();
+        previous.stop();
+        acceptAll();
+        start(LARGE_SEGMENT).replay();
+
+        assertThat(delivered).containsExactly(
+                hitDtos.subList(0, 2), hitDtos.subList(2, 4), hitDtos.subList(2, 4), hitDtos.subList(4, 5));
+    }
+
+    @Test
+    void rejectedBatchIsDroppedAndReplayContinues() throws IOException {
+        List<EndpointHitDto> hitDtos = hits(4);
+        HitSpool spool = start(LARGE_SEGMENT);
+        hitDtos.forEach(hitDto -> spool.append(List.of(hitDto)));
+        doThrow(new ClientException(400, "Bad Request"))
+                .doAnswer(invocation -> deliver(invocation.getArgument(0)))
+                .when(statsClient).addHits(anyList());
+
+        spool.replay();
+
+        assertThat(flatten(delivered)).isEqualTo(hitDtos.subList(2, 4));
+        assertThat(segments()).isEmpty();
+    }
+
+    @Test
+    void disabledSpoolStoresNothing() throws IOException {
+        HitSpool spool = spool(false, LARGE_SEGMENT);
+        spool.start();
+
+        assertThat(spool.append(hits(1))).isFalse();
+        verify(statsClient, never()).addHits(anyList());
+        assertThat(directory).isEmptyDirectory();
+    }
+
+    @Test
+    void onlyOverloadAndOutagesAreRetryable() {
+        assertThat(HitSpool.isRetryable(new ClientException(429, "Too Many Requests"))).isTrue();
+        assertThat(HitSpool.isRetryable(new ClientException(503, "Service Unavailable"))).isTrue();
+        assertThat(HitSpool.isRetryable(new ResourceAccessException("Connection refused"))).isTrue();
+        assertThat(HitSpool.isRetryable(new ClientException(400, "Bad Request"))).isFalse();
+    }
+
+    private HitSpool start(long segmentBytes) throws IOException {
+        HitSpool spool = spool(true, segmentBytes);
+        spool.start();
+        spools.add(spool);
+        return spool;
+    }
+
+    // Фоновые отправка и fsync раз в час: в тестах replay вызывается явно
+    private HitSpool spool(boolean enabled, long segmentBytes) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(
+                Map.of("meterRegistry", new SimpleMeterRegistry()));
+        return new HitSpool(statsClient, beanFactory.getBeanProvider(MeterRegistry.class), enabled,
+                directory.toString(), segmentBytes, LARGE_SEGMENT * 64, BATCH_SIZE, HOUR_MS, HOUR_MS);
+    }
+
+    private void acceptAll() {
+        doAnswer(invocation -> deliver(invocation.getArgument(0))).when(statsClient).addHits(anyList());
+    }
+
+    // Пакет после отправки очищается и переиспользуется, поэтому сохраняется копия
+    private Object deliver(List<EndpointHitDto> batch) {
+        delivered.add(List.copyOf(batch));
+        return null;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".spool"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static List<EndpointHitDto> hits(int count) {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 0);
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EndpointHitDto(null, "ewm-main-service", "/events/" + i, "10.0.0." + i,
+                        time.plusSeconds(i)))
+                .toList();
+    }
+
+    private static List<EndpointHitDto> flatten(List<List<EndpointHitDto>> batches) {
+        return batches.stream()
+                .flatMap(List::stream)
+                .toList();
+    }
+}
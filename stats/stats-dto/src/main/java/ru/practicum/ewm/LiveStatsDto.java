@@ -0,0 +1,18 @@
+package ru.practicum.ewm;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Просмотры uri за последнюю минуту, 15 минут и час по счётчикам сервера статистики в памяти
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LiveStatsDto {
+    private String uri;
+    private long lastMinute;
+    private long last15Minutes;
+    private long lastHour;
+}
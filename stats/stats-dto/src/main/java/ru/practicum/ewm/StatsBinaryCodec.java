@@ -0,0 +1,230 @@
+package ru.practicum.ewm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Компактный двоичный формат обмена между StatsClient и сервером статистики.
+// Сообщение: байт версии, число записей (varint), записи. Целые числа пишутся как varint,
+// время - как разница в миллисекундах (UTC) с предыдущей записью в zigzag-кодировке.
+// Строки (app, uri, ip) передаются один раз, повторы - ссылкой на номер в словаре сообщения:
+// 0 - null, 1 - новая строка (длина и UTF-8), n >= 2 - строка с номером n - 2.
+// Для необязательных чисел 0 означает null, остальные значения сдвинуты на единицу.
+public final class StatsBinaryCodec {
+    public static final String MEDIA_TYPE = "application/x-ewm-stats";
+
+    private static final int VERSION = 1;
+    // Размер из сообщения не используется как ёмкость напрямую: повреждённый заголовок не должен занять всю память
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private StatsBinaryCodec() {
+    }
+
+    public static void writeHits(List<EndpointHitDto> hitDtos, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        writer.writeVarLong(hitDtos.size());
+        for (EndpointHitDto hitDto : hitDtos) {
+            writer.writeHit(hitDto);
+        }
+        writer.flush();
+    }
+
+    public static List<EndpointHitDto> readHits(InputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        int size = reader.readSize();
+        List<EndpointHitDto> hitDtos = new ArrayList<>(Math.min(size, INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            hitDtos.add(reader.readHit());
+        }
+        return hitDtos;
+    }
+
+    public static void writeHit(EndpointHitDto hitDto, OutputStream out) throws IOException {
+        writeHits(List.of(hitDto), out);
+    }
+
+    public static EndpointHitDto readHit(InputStream in) throws IOException {
+        List<EndpointHitDto> hitDtos = readHits(in);
+        if (hitDtos.size() != 1) {
+            throw new IOException("Ожидался один хит, получено " + hitDtos.size());
+        }
+        return hitDtos.getFirst();
+    }
+
+    public static void writeStats(List<ViewStatsDto> statistics, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        writer.writeVarLong(statistics.size());
+        for (ViewStatsDto viewStats : statistics) {
+            writer.writeString(viewStats.getApp());
+            writer.writeString(viewStats.getUri());
+            writer.writeOptional(viewStats.getHits());
+        }
+        writer.flush();
+    }
+
+    public static List<ViewStatsDto> readStats(InputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        int size = reader.readSize();
+        List<ViewStatsDto> statistics = new ArrayList<>(Math.min(size, INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            statistics.add(new ViewStatsDto(reader.readString(), reader.readString(), reader.readOptional()));
+        }
+        return statistics;
+    }
+
+    private static final class Writer {
+        private final OutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private long lastMillis;
+
+        private Writer(OutputStream out) throws IOException {
+            this.out = new BufferedOutputStream(out);
+            this.out.write(VERSION);
+        }
+
+        private void writeHit(EndpointHitDto hitDto) throws IOException {
+            writeOptional(hitDto.getId());
+            writeString(hitDto.getApp());
+            writeString(hitDto.getUri());
+            writeString(hitDto.getIp());
+            writeTimestamp(hitDto.getTimestamp());
+        }
+
+        private void writeTimestamp(LocalDateTime timestamp) throws IOException {
+            if (timestamp == null) {
+                writeVarLong(0);
+                return;
+            }
+            long millis = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+            long delta = millis - lastMillis;
+            lastMillis = millis;
+            writeVarLong(((delta << 1) ^ (delta >> 63)) + 1);
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer ref = strings.get(value);
+            if (ref != null) {
+                writeVarLong(ref + 2L);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(1);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeOptional(Long value) throws IOException {
+            writeVarLong(value == null ? 0 : value + 1);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        private void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final class Reader {
+        private final InputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private long lastMillis;
+
+        private Reader(InputStream in) throws IOException {
+            this.in = new BufferedInputStream(in);
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия формата: " + version);
+            }
+        }
+
+        private EndpointHitDto readHit() throws IOException {
+            return new EndpointHitDto(readOptional(), readString(), readString(), readString(), readTimestamp());
+        }
+
+        private LocalDateTime readTimestamp() throws IOException {
+            long value = readVarLong();
+            if (value == 0) {
+                return null;
+            }
+            value--;
+            lastMillis += (value >>> 1) ^ -(value & 1);
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastMillis), ZoneOffset.UTC);
+        }
+
+        private String readString() throws IOException {
+            long ref = readVarLong();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref >= 2) {
+                if (ref - 2 >= strings.size()) {
+                    throw new IOException("Ссылка на отсутствующую строку: " + (ref - 2));
+                }
+                return strings.get((int) (ref - 2));
+            }
+            int length = readSize();
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("Сообщение обрывается внутри строки");
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        private Long readOptional() throws IOException {
+            long value = readVarLong();
+            return value == 0 ? null : value - 1;
+        }
+
+        private int readSize() throws IOException {
+            long size = readVarLong();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Недопустимый размер: " + size);
+            }
+            return (int) size;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Слишком длинное число varint");
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Неожиданный конец сообщения");
+            }
+            return b;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.practicum.ewm;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+// Шаг временного ряда /stats/timeseries; интервалы выровнены по началу эпохи (UTC)
+@Getter
+@RequiredArgsConstructor
+public enum TimeSeriesBucket {
+    FIVE_MINUTES(300),
+    HOUR(3600),
+    DAY(86400);
+
+    private final long seconds;
+}
@@ -0,0 +1,17 @@
+package ru.practicum.ewm;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Число просмотров (app, uri) по интервалам ряда: hits[i] - интервал start + i * bucket
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewSeriesDto {
+    private String app;
+    private String uri;
+    private long[] hits;
+}
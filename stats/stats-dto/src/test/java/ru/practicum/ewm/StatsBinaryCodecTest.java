@@ -0,0 +1,99 @@
+package ru.practicum.ewm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsBinaryCodecTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+
+    @Test
+    void hitsSurviveRoundTrip() throws IOException {
+        // Повторы строк, null в необязательных полях, время назад и не-ASCII uri
+        List<EndpointHitDto> hitDtos = List.of(
+                new EndpointHitDto(null, "ewm-main-service", "/events/1", "192.168.0.1", TIME),
+                new EndpointHitDto(7L, "ewm-main-service", "/events/1", "192.168.0.2", TIME.minusDays(3)),
+                new EndpointHitDto(Long.MAX_VALUE - 1, "ewm-main-service", "/события/2", "::1", TIME.plusYears(50)),
+                new EndpointHitDto(0L, null, "/events", "192.168.0.1", null),
+                new EndpointHitDto(1L, "other", "", "192.168.0.1", LocalDateTime.of(1970, 1, 1, 0, 0)));
+
+        assertThat(StatsBinaryCodec.readHits(new ByteArrayInputStream(writeHits(hitDtos)))).isEqualTo(hitDtos);
+    }
+
+    @Test
+    void repeatedStringsAreWrittenOnce() throws IOException {
+        List<EndpointHitDto> hitDtos = IntStream.range(0, 1000)
+                .mapToObj(i -> new EndpointHitDto(null, "ewm-main-service", "/events/1", "10.0.0.1", TIME.plusSeconds(i)))
+                .toList();
+
+        byte[] bytes = writeHits(hitDtos);
+
+        assertThat(StatsBinaryCodec.readHits(new ByteArrayInputStream(bytes))).isEqualTo(hitDtos);
+        // id и три ссылки на строки - по байту, разница во времени в секунду - два байта
+        assertThat(bytes.length).isLessThan(hitDtos.size() * 6 + 64);
+    }
+
+    @Test
+    void singleHitSurvivesRoundTrip() throws IOException {
+        EndpointHitDto hitDto = new EndpointHitDto(null, "ewm-main-service", "/events/1", "192.168.0.1", TIME);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeHit(hitDto, out);
+
+        assertThat(StatsBinaryCodec.readHit(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(hitDto);
+    }
+
+    @Test
+    void statsSurviveRoundTrip() throws IOException {
+        List<ViewStatsDto> statistics = List.of(
+                new ViewStatsDto("ewm-main-service", "/events/1", 1_000_000_000_000L),
+                new ViewStatsDto("ewm-main-service", "/events/2", 0L),
+                new ViewStatsDto("ewm-main-service", "/events/1", null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeStats(statistics, out);
+
+        assertThat(StatsBinaryCodec.readStats(new ByteArrayInputStream(out.toByteArray()))).isEqualTo(statistics);
+    }
+
+    @Test
+    void emptyListsSurviveRoundTrip() throws IOException {
+        assertThat(StatsBinaryCodec.readHits(new ByteArrayInputStream(writeHits(List.of())))).isEmpty();
+    }
+
+    @Test
+    void truncatedMessageIsRejected() throws IOException {
+        byte[] bytes = writeHits(List.of(
+                new EndpointHitDto(null, "ewm-main-service", "/events/1", "192.168.0.1", TIME)));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThatThrownBy(() -> StatsBinaryCodec.readHits(new ByteArrayInputStream(truncated)))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void unknownVersionIsRejected() throws IOException {
+        byte[] bytes = writeHits(List.of());
+        bytes[0] = 99;
+
+        assertThatThrownBy(() -> StatsBinaryCodec.readHits(new ByteArrayInputStream(bytes)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("99");
+    }
+
+    private static byte[] writeHits(List<EndpointHitDto> hitDtos) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeHits(hitDtos, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.ewm;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+// Двоичный формат StatsBinaryCodec для /hit, /hits и /stats. Выбирается по Content-Type и Accept,
+// без этих заголовков по-прежнему используется JSON
+@Component
+public class StatsBinaryMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public StatsBinaryMessageConverter() {
+        super(MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHitDto.class == clazz || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (isHit(type) || isListOf(type, EndpointHitDto.class)) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return isListOf(type == null ? clazz : type, ViewStatsDto.class) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        try {
+            if (isHit(type)) {
+                return StatsBinaryCodec.readHit(inputMessage.getBody());
+            }
+            return StatsBinaryCodec.readHits(inputMessage.getBody());
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("Некорректное двоичное сообщение: " + e.getMessage(), e,
+                    inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object statistics, Type type, HttpOutputMessage outputMessage) throws IOException {
+        StatsBinaryCodec.writeStats((List<ViewStatsDto>) statistics, outputMessage.getBody());
+    }
+
+    private boolean isHit(Type type) {
+        return type == EndpointHitDto.class;
+    }
+
+    private boolean isListOf(Type type, Class<?> elementClass) {
+        ResolvableType resolvableType = ResolvableType.forType(type);
+        return List.class.isAssignableFrom(resolvableType.toClass())
+                && resolvableType.getGeneric(0).toClass() == elementClass;
+    }
+}
@@ -1,21 +1,36 @@
 package ru.practicum.ewm;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.ewm.model.StatsCoverage;
+import ru.practicum.ewm.model.UriFilter;
 import ru.practicum.ewm.service.StatsService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 public class StatsController {
+    public static final String EFFECTIVE_START_HEADER = "X-Stats-Effective-Start";
+    public static final String EFFECTIVE_END_HEADER = "X-Stats-Effective-End";
+    public static final String APPROXIMATE_HEADER = "X-Stats-Approximate";
+    private static final DateTimeFormatter RANGE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private final StatsService statsService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -24,12 +39,105 @@ public class StatsController {
         statsService.addHit(hitDto);
     }
 
-    @GetMapping("/stats")
+    @PostMapping("/hits")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void addHits(@RequestBody List<@Valid EndpointHitDto> hitDtos) {
+        log.info("POST/hits in StatsController. size = {}", hitDtos.size());
+        statsService.addHits(hitDtos);
+    }
+
+    // Формат ответа выбирается по Accept: JSON по умолчанию или двоичный StatsBinaryCodec
+    @GetMapping(value = "/stats", produces = {MediaType.APPLICATION_JSON_VALUE, StatsBinaryCodec.MEDIA_TYPE})
     public List<ViewStatsDto> getStats(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
                                        @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
                                        @RequestParam(required = false) List<String> uris,
+                                       @RequestParam(required = false) List<String> uriPrefix,
+                                       @RequestParam(required = false) List<String> uriGlob,
+                                       @RequestParam(defaultValue = "false") boolean unique,
+                                       @RequestParam(required = false) Boolean approximate,
+                                       HttpServletResponse response) {
+        log.info("GET/stats in StatsController. start = {}, end = {}, uris = {}, uriPrefix = {}, uriGlob = {}, " +
+                "unique = {}, approximate = {}", start, end, uris, uriPrefix, uriGlob, unique, approximate);
+        UriFilter uriFilter = UriFilter.of(uris, uriPrefix, uriGlob);
+        writeCoverage(statsService.getCoverage(start, end, uriFilter, unique, approximate), start, end, response);
+        return statsService.getStats(start, end, uriFilter, unique, approximate);
+    }
+
+    // Временные ряды просмотров: число хитов (app, uri) в каждом интервале bucket за период
+    @GetMapping("/stats/timeseries")
+    public TimeSeriesDto getTimeSeries(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                       @RequestParam(required = false) List<String> uris,
+                                       @RequestParam(required = false) List<String> uriPrefix,
+                                       @RequestParam(required = false) List<String> uriGlob,
+                                       @RequestParam(defaultValue = "HOUR") TimeSeriesBucket bucket,
                                        @RequestParam(defaultValue = "false") boolean unique) {
-        log.info("GET/stats in StatsController. start = {}, end = {}, uris = {}, unique = {}", start, end, uris.getFirst(), unique);
-        return statsService.getStats(start, end, uris, unique);
+        log.info("GET/stats/timeseries in StatsController. start = {}, end = {}, uris = {}, uriPrefix = {}, " +
+                "uriGlob = {}, bucket = {}, unique = {}", start, end, uris, uriPrefix, uriGlob, bucket, unique);
+        return statsService.getTimeSeries(start, end, UriFilter.of(uris, uriPrefix, uriGlob), bucket, unique);
+    }
+
+    // Самые посещаемые uri за период; при диапазоне в пределах последних суток отвечает из памяти
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTop(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                                     @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                                     @RequestParam(defaultValue = "10") int k,
+                                     @RequestParam(required = false) String prefix) {
+        log.info("GET/stats/top in StatsController. start = {}, end = {}, k = {}, prefix = {}", start, end, k, prefix);
+        return statsService.getTop(start, end, k, prefix);
+    }
+
+    // Просмотры за последнюю минуту, 15 минут и час по счётчикам в памяти, без обращения к БД.
+    // Без фильтра по uri - первые limit uri с хитами за последний час
+    @GetMapping("/stats/live")
+    public List<LiveStatsDto> getLive(@RequestParam(required = false) List<String> uris,
+                                      @RequestParam(required = false) List<String> uriPrefix,
+                                      @RequestParam(required = false) List<String> uriGlob,
+                                      @RequestParam(defaultValue = "100") int limit) {
+        log.info("GET/stats/live in StatsController. uris = {}, uriPrefix = {}, uriGlob = {}, limit = {}",
+                uris, uriPrefix, uriGlob, limit);
+        return statsService.getLive(UriFilter.of(uris, uriPrefix, uriGlob), limit);
+    }
+
+    // Потоковый режим: строки пишутся в ответ в формате NDJSON по мере чтения из БД.
+    // Ответ пишется в потоке запроса, поэтому ошибки валидации до первой строки возвращаются как обычно
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamStats(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+                            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+                            @RequestParam(required = false) List<String> uris,
+                            @RequestParam(required = false) List<String> uriPrefix,
+                            @RequestParam(required = false) List<String> uriGlob,
+                            @RequestParam(defaultValue = "false") boolean unique,
+                            @RequestParam(required = false) Boolean approximate,
+                            HttpServletResponse response) throws IOException {
+        log.info("GET/stats (ndjson) in StatsController. start = {}, end = {}, uris = {}, uriPrefix = {}, " +
+                "uriGlob = {}, unique = {}, approximate = {}", start, end, uris, uriPrefix, uriGlob, unique, approximate);
+        UriFilter uriFilter = UriFilter.of(uris, uriPrefix, uriGlob);
+        writeCoverage(statsService.getCoverage(start, end, uriFilter, unique, approximate), start, end, response);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        statsService.streamStats(start, end, uriFilter, unique, approximate, viewStats -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(viewStats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    // Раньше границы сжатия остались только суточные агрегаты и скетчи: ответ может покрывать целые сутки
+    // вокруг запрошенных границ или содержать оценку уникальных посетителей. Это сообщается заголовками,
+    // тело ответа не меняется
+    private void writeCoverage(StatsCoverage coverage, LocalDateTime start, LocalDateTime end,
+                               HttpServletResponse response) {
+        if (!coverage.start().equals(start) || !coverage.end().equals(end)) {
+            response.setHeader(EFFECTIVE_START_HEADER, RANGE_FORMAT.format(coverage.start()));
+            response.setHeader(EFFECTIVE_END_HEADER, RANGE_FORMAT.format(coverage.end()));
+        }
+        if (coverage.approximate()) {
+            response.setHeader(APPROXIMATE_HEADER, "true");
+        }
     }
-}
\ No newline at end of file
+}
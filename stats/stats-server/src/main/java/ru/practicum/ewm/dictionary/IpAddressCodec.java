@@ -0,0 +1,78 @@
+package ru.practicum.ewm.dictionary;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Компактное хранение ip: IPv4 - 4 байта, IPv6 - 16 байт.
+// Строки, не являющиеся ip-литералами, хранятся как UTF-8 с ведущими нулевыми байтами,
+// так что их длина никогда не совпадает с длиной адреса.
+public final class IpAddressCodec {
+    private IpAddressCodec() {
+    }
+
+    public static byte[] encode(String ip) {
+        byte[] ipv4 = parseIpv4(ip);
+        if (ipv4 != null) {
+            return ipv4;
+        }
+        // Строка с ':' разбирается как IPv6-литерал без обращения к DNS
+        if (ip.indexOf(':') >= 0) {
+            try {
+                InetAddress address = InetAddress.getByName(ip);
+                if (address instanceof Inet6Address) {
+                    return address.getAddress();
+                }
+            } catch (UnknownHostException | SecurityException ignore) {
+                // не ip-литерал, сохраняем как строку
+            }
+        }
+        byte[] text = ip.getBytes(StandardCharsets.UTF_8);
+        int padding = text.length + 1 == 4 || text.length + 1 == 16 ? 2 : 1;
+        byte[] encoded = new byte[text.length + padding];
+        System.arraycopy(text, 0, encoded, padding, text.length);
+        return encoded;
+    }
+
+    public static String decode(byte[] bytes) {
+        if (bytes.length == 4 || bytes.length == 16) {
+            try {
+                return InetAddress.getByAddress(bytes).getHostAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException("Некорректный адрес длиной " + bytes.length, e);
+            }
+        }
+        int start = 0;
+        while (start < bytes.length && bytes[start] == 0) {
+            start++;
+        }
+        return new String(Arrays.copyOfRange(bytes, start, bytes.length), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        byte[] bytes = new byte[4];
+        int octet = 0;
+        int value = -1;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && value >= 0 && octet < 3) {
+                bytes[octet++] = (byte) value;
+                value = -1;
+            } else {
+                return null;
+            }
+        }
+        if (octet != 3 || value < 0) {
+            return null;
+        }
+        bytes[3] = (byte) value;
+        return bytes;
+    }
+}
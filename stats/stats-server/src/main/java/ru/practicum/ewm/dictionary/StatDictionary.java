@@ -0,0 +1,212 @@
+package ru.practicum.ewm.dictionary;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.mapstruct.Named;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.ViewStatsDto;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.UriFilter;
+import ru.practicum.ewm.model.UriPattern;
+import ru.practicum.ewm.repository.DictionaryRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Словарное кодирование app и uri: в таблицах хитов и агрегатов хранятся только целочисленные коды.
+// Словари целиком держатся в памяти и пополняются по мере появления новых значений. Значения, добавленные
+// другим экземпляром сервиса, подгружаются из БД при первом обращении к их коду или строке.
+@Slf4j
+@Component
+public class StatDictionary {
+    private static final String APP_TABLE = "stat_app";
+    private static final String URI_TABLE = "stat_uri";
+
+    private final DictionaryRepository dictionaryRepository;
+    private final TransactionTemplate requiresNew;
+    private final UriTrie uriTrie = new UriTrie();
+    private final Entries apps = new Entries(null);
+    private final Entries uris = new Entries(uriTrie);
+
+    public StatDictionary(DictionaryRepository dictionaryRepository, PlatformTransactionManager transactionManager) {
+        this.dictionaryRepository = dictionaryRepository;
+        // Новое значение фиксируется отдельно: откат пачки хитов не должен оставить в памяти код без строки в БД
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void load() {
+        dictionaryRepository.findAll(APP_TABLE, apps::put);
+        dictionaryRepository.findAll(URI_TABLE, uris::put);
+        log.info("Загружены словари статистики: приложений = {}, uri = {}", apps.size(), uris.size());
+    }
+
+    @Named("appId")
+    public int appId(String app) {
+        return getOrCreate(APP_TABLE, apps, app);
+    }
+
+    @Named("uriId")
+    public int uriId(String uri) {
+        return getOrCreate(URI_TABLE, uris, uri);
+    }
+
+    public int uriCount() {
+        return uris.size();
+    }
+
+    @Named("app")
+    public String app(int appId) {
+        return value(APP_TABLE, apps, appId);
+    }
+
+    @Named("uri")
+    public String uri(int uriId) {
+        return value(URI_TABLE, uris, uriId);
+    }
+
+    // Коды известных uri, подходящих под фильтр; uri, которых нет и в БД, не встречались в хитах и пропускаются.
+    // Шаблоны сначала сужаются до кандидатов по префиксному дереву, затем проверяются целиком
+    public List<Integer> findUriIds(UriFilter filter) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String value : filter.uris()) {
+            Integer id = find(URI_TABLE, uris, value);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        if (!filter.patterns().isEmpty()) {
+            refresh(URI_TABLE, uris);
+        }
+        for (UriPattern pattern : filter.patterns()) {
+            uriTrie.collect(pattern.getLiteralPrefix(), id -> {
+                if (pattern.matches(uri(id))) {
+                    ids.add(id);
+                }
+            });
+        }
+        return List.copyOf(ids);
+    }
+
+    public ViewStatsDto decode(StatCount count) {
+        return new ViewStatsDto(app(count.appId()), uri(count.uriId()), count.hits());
+    }
+
+    private String value(String table, Entries entries, int id) {
+        String value = entries.value(id);
+        if (value != null) {
+            return value;
+        }
+        entries.lock.lock();
+        try {
+            value = entries.value(id);
+            if (value == null) {
+                value = dictionaryRepository.findValue(table, id);
+                if (value == null) {
+                    throw new IllegalStateException("Код " + id + " отсутствует в словаре " + table);
+                }
+                entries.put(value, id);
+            }
+            return value;
+        } finally {
+            entries.lock.unlock();
+        }
+    }
+
+    private Integer find(String table, Entries entries, String value) {
+        Integer id = entries.id(value);
+        if (id != null) {
+            return id;
+        }
+        entries.lock.lock();
+        try {
+            id = entries.id(value);
+            if (id == null) {
+                id = dictionaryRepository.findId(table, value);
+                if (id != null) {
+                    entries.put(value, id);
+                }
+            }
+            return id;
+        } finally {
+            entries.lock.unlock();
+        }
+    }
+
+    // Подгружает значения с кодами больше известных. Код, выданный раньше, но зафиксированный позже,
+    // сюда не попадёт; такое значение найдётся по коду или строке через value/find
+    private void refresh(String table, Entries entries) {
+        entries.lock.lock();
+        try {
+            dictionaryRepository.findAfter(table, entries.maxId, entries::put);
+        } finally {
+            entries.lock.unlock();
+        }
+    }
+
+    private int getOrCreate(String table, Entries entries, String value) {
+        Integer id = entries.id(value);
+        if (id != null) {
+            return id;
+        }
+        // Запрос к БД выполняется под ReentrantLock, а не под монитором, который закрепил бы виртуальный поток
+        entries.lock.lock();
+        try {
+            id = entries.id(value);
+            if (id == null) {
+                try {
+                    id = requiresNew.execute(status -> dictionaryRepository.getOrCreate(table, value));
+                } catch (DuplicateKeyException e) {
+                    // Значение одновременно добавил другой экземпляр сервиса
+                    id = requiresNew.execute(status -> dictionaryRepository.findId(table, value));
+                }
+                entries.put(value, id);
+            }
+            return id;
+        } finally {
+            entries.lock.unlock();
+        }
+    }
+
+    private static class Entries {
+        private final Lock lock = new ReentrantLock();
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+        private final UriTrie index;
+        // Изменяется под lock или при загрузке
+        private volatile int maxId;
+
+        Entries(UriTrie index) {
+            this.index = index;
+        }
+
+        Integer id(String value) {
+            return ids.get(value);
+        }
+
+        String value(int id) {
+            return values.get(id);
+        }
+
+        // Код публикуется для чтения раньше, чем для записи: хит с кодом всегда можно раскодировать
+        void put(String value, int id) {
+            values.put(id, value);
+            maxId = Math.max(maxId, id);
+            if (index != null) {
+                index.put(value, id);
+            }
+            ids.put(value, id);
+        }
+
+        int size() {
+            return ids.size();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.ewm.dictionary;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+// Сжатое префиксное дерево (radix trie) над uri словаря: коды всех uri с заданным префиксом
+// находятся за O(длина префикса + размер ответа) без перебора словаря
+public class UriTrie {
+    private static final int NO_ID = -1;
+
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void put(String uri, int id) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            String rest = uri;
+            while (!rest.isEmpty()) {
+                Node child = node.children.get(rest.charAt(0));
+                if (child == null) {
+                    child = new Node(rest);
+                    node.children.put(rest.charAt(0), child);
+                    node = child;
+                    break;
+                }
+                int common = commonPrefixLength(child.label, rest);
+                if (common < child.label.length()) {
+                    // Ребро расщепляется на общую часть и остаток
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.children.put(child.label.charAt(0), child);
+                    node.children.put(rest.charAt(0), split);
+                    child = split;
+                }
+                node = child;
+                rest = rest.substring(common);
+            }
+            node.id = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void collect(String prefix, IntConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            String rest = prefix;
+            while (!rest.isEmpty()) {
+                Node child = node.children.get(rest.charAt(0));
+                if (child == null) {
+                    return;
+                }
+                if (rest.length() <= child.label.length()) {
+                    // Префикс заканчивается внутри ребра
+                    if (child.label.startsWith(rest)) {
+                        collectAll(child, consumer);
+                    }
+                    return;
+                }
+                if (!rest.startsWith(child.label)) {
+                    return;
+                }
+                rest = rest.substring(child.label.length());
+                node = child;
+            }
+            collectAll(node, consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collectAll(Node start, IntConsumer consumer) {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.id != NO_ID) {
+                consumer.accept(node.id);
+            }
+            node.children.values().forEach(stack::push);
+        }
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private String label;
+        private int id = NO_ID;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+}
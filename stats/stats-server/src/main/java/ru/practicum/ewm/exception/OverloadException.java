@@ -0,0 +1,17 @@
+package ru.practicum.ewm.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+// Хит не принят из-за перегрузки; клиенту возвращается status и заголовок Retry-After
+@Getter
+public class OverloadException extends RuntimeException {
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public OverloadException(HttpStatus status, long retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+// Число хитов (app, uri) в интервале, начинающемся в bucket; для построения временных рядов
+public record BucketCount(int appId, int uriId, LocalDateTime bucket, long hits) {
+}
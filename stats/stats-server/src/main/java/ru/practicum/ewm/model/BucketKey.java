@@ -0,0 +1,16 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+// Ключ агрегата: код uri, начало интервала и код приложения - в порядке первичного ключа таблиц
+public record BucketKey(int uriId, LocalDateTime bucket, int appId) implements Comparable<BucketKey> {
+    private static final Comparator<BucketKey> ORDER = Comparator.comparingInt(BucketKey::uriId)
+            .thenComparing(BucketKey::bucket)
+            .thenComparingInt(BucketKey::appId);
+
+    @Override
+    public int compareTo(BucketKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -14,17 +14,21 @@ import java.time.LocalDateTime;
 @Table(name = "statistic")
 public class EndpointHit {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "statistic_seq")
+    @SequenceGenerator(name = "statistic_seq", sequenceName = "statistic_seq", allocationSize = 50)
     private long id;
 
-    @Column(name = "app", nullable = false)
-    private String app;
+    // Код приложения в словаре stat_app
+    @Column(name = "app_id", nullable = false)
+    private int appId;
 
-    @Column(name = "uri", nullable = false)
-    private String uri;
+    // Код uri в словаре stat_uri
+    @Column(name = "uri_id", nullable = false)
+    private int uriId;
 
+    // 4 байта для IPv4, 16 байт для IPv6
     @Column(name = "ip", nullable = false)
-    private String ip;
+    private byte[] ip;
 
     @Column(name = "timestamp", nullable = false)
     private LocalDateTime timestamp;
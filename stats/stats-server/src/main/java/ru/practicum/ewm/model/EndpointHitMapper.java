@@ -1,12 +1,21 @@
 package ru.practicum.ewm.model;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.dictionary.IpAddressCodec;
+import ru.practicum.ewm.dictionary.StatDictionary;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = StatDictionary.class, imports = IpAddressCodec.class)
 public interface EndpointHitMapper {
 
+    @Mapping(target = "appId", source = "app", qualifiedByName = "appId")
+    @Mapping(target = "uriId", source = "uri", qualifiedByName = "uriId")
+    @Mapping(target = "ip", expression = "java(IpAddressCodec.encode(endpointHitDto.getIp()))")
     EndpointHit toHit(EndpointHitDto endpointHitDto);
 
+    @Mapping(target = "app", source = "appId", qualifiedByName = "app")
+    @Mapping(target = "uri", source = "uriId", qualifiedByName = "uri")
+    @Mapping(target = "ip", expression = "java(IpAddressCodec.decode(endpointHit.getIp()))")
     EndpointHitDto toHitDto(EndpointHit endpointHit);
-}
\ No newline at end of file
+}
@@ -0,0 +1,5 @@
+package ru.practicum.ewm.model;
+
+// Просмотры uri за последнюю минуту, 15 минут и час по счётчикам в памяти
+public record LiveCount(int uriId, long lastMinute, long last15Minutes, long lastHour) {
+}
@@ -0,0 +1,5 @@
+package ru.practicum.ewm.model;
+
+// Строка статистики в кодах словаря; раскодируется в ViewStatsDto перед отдачей клиенту
+public record StatCount(int appId, int uriId, long hits) {
+}
@@ -0,0 +1,5 @@
+package ru.practicum.ewm.model;
+
+// Ключ строки статистики: коды приложения и uri
+public record StatKey(int appId, int uriId) {
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+// Что на самом деле покрывает ответ /stats: границы после расширения сжатого периода до целых суток
+// и признак оценки уникальных посетителей по скетчам вместо точного подсчёта
+public record StatsCoverage(LocalDateTime start, LocalDateTime end, boolean approximate) {
+}
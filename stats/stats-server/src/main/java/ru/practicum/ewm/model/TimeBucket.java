@@ -0,0 +1,28 @@
+package ru.practicum.ewm.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Гранулярность предагрегированных таблиц статистики
+@Getter
+@RequiredArgsConstructor
+public enum TimeBucket {
+    MINUTE("statistic_minute", ChronoUnit.MINUTES),
+    HOUR("statistic_hour", ChronoUnit.HOURS),
+    DAY("statistic_day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? time : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.ewm.model;
+
+import java.time.LocalDateTime;
+
+// Промежуток времени [from, to], обе границы включаются
+public record TimeRange(LocalDateTime from, LocalDateTime to) {
+}
@@ -0,0 +1,28 @@
+package ru.practicum.ewm.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Отбор uri для /stats: точные значения и шаблоны объединяются по ИЛИ, пустой фильтр - все uri
+public record UriFilter(List<String> uris, List<UriPattern> patterns) {
+    public static final UriFilter ALL = new UriFilter(List.of(), List.of());
+
+    public static UriFilter of(List<String> uris, List<String> prefixes, List<String> globs) {
+        List<UriPattern> patterns = new ArrayList<>();
+        if (prefixes != null) {
+            prefixes.forEach(prefix -> patterns.add(UriPattern.prefix(prefix)));
+        }
+        if (globs != null) {
+            globs.forEach(glob -> patterns.add(UriPattern.glob(glob)));
+        }
+        return new UriFilter(uris == null ? List.of() : List.copyOf(uris), List.copyOf(patterns));
+    }
+
+    public boolean isEmpty() {
+        return uris.isEmpty() && patterns.isEmpty();
+    }
+
+    public boolean matches(String uri) {
+        return uris.contains(uri) || patterns.stream().anyMatch(pattern -> pattern.matches(uri));
+    }
+}
@@ -0,0 +1,72 @@
+package ru.practicum.ewm.model;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.regex.Pattern;
+
+// Шаблон uri для /stats: префикс или glob, где * - любые символы внутри сегмента пути,
+// ** - любые символы, включая '/', ? - один символ, кроме '/'
+@Getter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public final class UriPattern {
+    @EqualsAndHashCode.Include
+    private final String source;
+    // Часть шаблона до первого спецсимвола: по ней кандидаты отбираются в префиксном дереве
+    private final String literalPrefix;
+    @Getter(AccessLevel.NONE)
+    private final Pattern regex;
+
+    private UriPattern(String source, String literalPrefix, Pattern regex) {
+        this.source = source;
+        this.literalPrefix = literalPrefix;
+        this.regex = regex;
+    }
+
+    public static UriPattern prefix(String prefix) {
+        return new UriPattern("prefix:" + prefix, prefix, null);
+    }
+
+    public static UriPattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int literalEnd = -1;
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literalEnd < 0) {
+                    literalEnd = i;
+                }
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '?') {
+                    regex.append("[^/]");
+                } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        String literalPrefix = literalEnd < 0 ? glob : glob.substring(0, literalEnd);
+        return new UriPattern("glob:" + glob, literalPrefix, Pattern.compile(regex.toString()));
+    }
+
+    public boolean matches(String uri) {
+        return regex == null ? uri.startsWith(literalPrefix) : regex.matcher(uri).matches();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.model.BucketKey;
+import ru.practicum.ewm.model.TimeBucket;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+// Граница сжатия и пакетное удаление данных старше неё. Каждый пакет - отдельный короткий DELETE
+// по диапазону ключа после последней удалённой строки, без OFFSET и без долгих блокировок
+@Repository
+@RequiredArgsConstructor
+public class CompactionRepository {
+    private static final String DELETE_RAW_BATCH =
+            "WITH batch AS (" +
+            "SELECT id, timestamp FROM statistic WHERE timestamp < :horizon%s " +
+            "ORDER BY timestamp, id LIMIT :limit) " +
+            "DELETE FROM statistic s USING batch b WHERE s.id = b.id AND s.timestamp = b.timestamp " +
+            "RETURNING s.timestamp, s.id";
+    private static final String AFTER_RAW_KEY =
+            " AND timestamp >= :afterTimestamp AND (timestamp, id) > (:afterTimestamp, :afterId)";
+    private static final String DELETE_ROLLUP_BATCH =
+            "WITH batch AS (" +
+            "SELECT uri_id, bucket, app_id FROM %1$s WHERE bucket < :horizon%2$s " +
+            "ORDER BY uri_id, bucket, app_id LIMIT :limit) " +
+            "DELETE FROM %1$s r USING batch b " +
+            "WHERE r.uri_id = b.uri_id AND r.bucket = b.bucket AND r.app_id = b.app_id " +
+            "RETURNING r.uri_id, r.bucket, r.app_id";
+    private static final String AFTER_ROLLUP_KEY =
+            " AND (uri_id, bucket, app_id) > (:afterUriId, :afterBucket, :afterAppId)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<LocalDateTime> findHorizon() {
+        return jdbcTemplate.getJdbcTemplate()
+                .query("SELECT compacted_before FROM statistic_compaction WHERE id = 1",
+                        (rs, rowNum) -> rs.getTimestamp("compacted_before").toLocalDateTime())
+                .stream()
+                .findFirst();
+    }
+
+    public void saveHorizon(LocalDateTime horizon) {
+        jdbcTemplate.getJdbcTemplate().update("INSERT INTO statistic_compaction (id, compacted_before) VALUES (1, ?) " +
+                "ON CONFLICT (id) DO UPDATE SET compacted_before = " +
+                "GREATEST(statistic_compaction.compacted_before, EXCLUDED.compacted_before)",
+                Timestamp.valueOf(horizon));
+    }
+
+    // Удаляет до limit сырых хитов раньше horizon с ключом (timestamp, id) больше after.
+    // Возвращает число удалённых строк и ключ последней из них, с которого начнётся следующий пакет
+    public Batch<RawKey> deleteRawBatch(LocalDateTime horizon, RawKey after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("horizon", Timestamp.valueOf(horizon))
+                .addValue("limit", limit);
+        String afterFilter = "";
+        if (after != null) {
+            params.addValue("afterTimestamp", Timestamp.valueOf(after.timestamp()))
+                    .addValue("afterId", after.id());
+            afterFilter = AFTER_RAW_KEY;
+        }
+        List<RawKey> deleted = jdbcTemplate.query(DELETE_RAW_BATCH.formatted(afterFilter), params,
+                (rs, rowNum) -> new RawKey(rs.getTimestamp("timestamp").toLocalDateTime(), rs.getLong("id")));
+        return new Batch<>(deleted.size(), deleted.stream()
+                .max(Comparator.comparing(RawKey::timestamp).thenComparingLong(RawKey::id))
+                .orElse(null));
+    }
+
+    // То же для таблицы предагрегатов: ключ - первичный ключ (uri_id, bucket, app_id)
+    public Batch<BucketKey> deleteRollupBatch(TimeBucket bucket, LocalDateTime horizon, BucketKey after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("horizon", Timestamp.valueOf(horizon))
+                .addValue("limit", limit);
+        String afterFilter = "";
+        if (after != null) {
+            params.addValue("afterUriId", after.uriId())
+                    .addValue("afterBucket", Timestamp.valueOf(after.bucket()))
+                    .addValue("afterAppId", after.appId());
+            afterFilter = AFTER_ROLLUP_KEY;
+        }
+        List<BucketKey> deleted = jdbcTemplate.query(DELETE_ROLLUP_BATCH.formatted(bucket.getTable(), afterFilter),
+                params, (rs, rowNum) -> new BucketKey(rs.getInt("uri_id"),
+                        rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("app_id")));
+        return new Batch<>(deleted.size(), deleted.stream()
+                .max(Comparator.naturalOrder())
+                .orElse(null));
+    }
+
+    public record RawKey(LocalDateTime timestamp, long id) {
+    }
+
+    public record Batch<K>(int deleted, K last) {
+    }
+}
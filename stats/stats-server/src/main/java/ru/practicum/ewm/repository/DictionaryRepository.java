@@ -0,0 +1,50 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+// Словари stat_app и stat_uri: строковое значение и его целочисленный код
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public void findAll(String table, ObjIntConsumer<String> consumer) {
+        jdbcTemplate.query("SELECT id, value FROM " + table, rs -> {
+            consumer.accept(rs.getString("value"), rs.getInt("id"));
+        });
+    }
+
+    // Значения, добавленные после afterId, например другим экземпляром сервиса
+    public void findAfter(String table, int afterId, ObjIntConsumer<String> consumer) {
+        jdbcTemplate.query("SELECT id, value FROM " + table + " WHERE id > ?", rs -> {
+            consumer.accept(rs.getString("value"), rs.getInt("id"));
+        }, afterId);
+    }
+
+    public String findValue(String table, int id) {
+        List<String> values = jdbcTemplate.queryForList("SELECT value FROM " + table + " WHERE id = ?",
+                String.class, id);
+        return values.isEmpty() ? null : values.getFirst();
+    }
+
+    public Integer findId(String table, String value) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE value = ?",
+                Integer.class, value);
+        return ids.isEmpty() ? null : ids.getFirst();
+    }
+
+    // Без ON CONFLICT, чтобы работать и на H2; гонку с другим экземпляром сервиса разрешает вызывающий код
+    public int getOrCreate(String table, String value) {
+        Integer id = findId(table, value);
+        if (id != null) {
+            return id;
+        }
+        jdbcTemplate.update("INSERT INTO " + table + " (value) VALUES (?)", value);
+        return findId(table, value);
+    }
+}
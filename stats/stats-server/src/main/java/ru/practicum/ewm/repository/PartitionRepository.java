@@ -0,0 +1,69 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Секции таблицы statistic по диапазонам timestamp (только PostgreSQL)
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final String DEFAULT_PARTITION = "statistic_default";
+    private static final Pattern RANGE_BOUND = Pattern.compile("FROM \\('([^']+)'\\) TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Секции с диапазоном; секция по умолчанию в список не попадает
+    public List<Partition> findAll() {
+        return jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+                        "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = 'statistic'::regclass",
+                        (rs, rowNum) -> parse(rs.getString("relname"), rs.getString("bound")))
+                .stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Хиты диапазона, успевшие попасть в секцию по умолчанию, переносятся в новую секцию до её подключения.
+    // Должно выполняться в транзакции.
+    public void create(String name, LocalDateTime from, LocalDateTime to) {
+        Timestamp fromTs = Timestamp.valueOf(from);
+        Timestamp toTs = Timestamp.valueOf(to);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE statistic INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update("INSERT INTO " + name + " SELECT * FROM " + DEFAULT_PARTITION +
+                " WHERE timestamp >= ? AND timestamp < ?", fromTs, toTs);
+        jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?",
+                fromTs, toTs);
+        jdbcTemplate.execute("ALTER TABLE statistic ATTACH PARTITION " + name +
+                " FOR VALUES FROM ('" + from.format(BOUND_FORMAT) + "') TO ('" + to.format(BOUND_FORMAT) + "')");
+    }
+
+    public void drop(String name) {
+        jdbcTemplate.execute("DROP TABLE " + name);
+    }
+
+    private Partition parse(String name, String bound) {
+        Matcher matcher = RANGE_BOUND.matcher(bound);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new Partition(name,
+                LocalDateTime.parse(matcher.group(1), BOUND_FORMAT),
+                LocalDateTime.parse(matcher.group(2), BOUND_FORMAT));
+    }
+
+    public record Partition(String name, LocalDateTime from, LocalDateTime to) {
+        public boolean overlaps(LocalDateTime otherFrom, LocalDateTime otherTo) {
+            return from.isBefore(otherTo) && otherFrom.isBefore(to);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.model.BucketCount;
+import ru.practicum.ewm.model.BucketKey;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.TimeBucket;
+import ru.practicum.ewm.model.TimeRange;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Таблицы statistic_minute/hour/day: число хитов по кодам (app, uri) в каждом интервале
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+    private static final List<TimeBucket> COARSE_TO_FINE = List.of(TimeBucket.DAY, TimeBucket.HOUR, TimeBucket.MINUTE);
+    private static final String UPSERT =
+            "INSERT INTO %1$s (uri_id, bucket, app_id, hits) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Увеличивает счётчики всех уровней на хиты из пачки
+    public void addHits(List<EndpointHit> hits) {
+        for (TimeBucket bucket : COARSE_TO_FINE) {
+            // Сортировка ключей задаёт единый порядок блокировок строк для параллельных транзакций
+            Map<BucketKey, Long> counts = new TreeMap<>();
+            for (EndpointHit hit : hits) {
+                counts.merge(new BucketKey(hit.getUriId(), bucket.floor(hit.getTimestamp()), hit.getAppId()), 1L, Long::sum);
+            }
+            List<Map.Entry<BucketKey, Long>> rows = new ArrayList<>(counts.entrySet());
+            jdbcTemplate.getJdbcTemplate().batchUpdate(UPSERT.formatted(bucket.getTable()), rows, rows.size(),
+                    (ps, row) -> {
+                        ps.setInt(1, row.getKey().uriId());
+                        ps.setTimestamp(2, Timestamp.valueOf(row.getKey().bucket()));
+                        ps.setInt(3, row.getKey().appId());
+                        ps.setLong(4, row.getValue());
+                    });
+        }
+    }
+
+    // Первые и последние сутки, за которые есть хиты; пусто, если хитов ещё не было
+    public Optional<TimeRange> findDaySpan() {
+        return jdbcTemplate.getJdbcTemplate()
+                .query("SELECT MIN(bucket) AS first_day, MAX(bucket) AS last_day FROM statistic_day", (rs, rowNum) -> {
+                    Timestamp firstDay = rs.getTimestamp("first_day");
+                    return firstDay == null ? null
+                            : new TimeRange(firstDay.toLocalDateTime(), rs.getTimestamp("last_day").toLocalDateTime());
+                })
+                .stream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    // Суммирует самые крупные интервалы, целиком лежащие в [start, end], а края добирает из сырых хитов.
+    // Строки передаются в consumer по мере чтения курсора, не накапливаясь в памяти.
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Consumer<StatCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        boolean withUris = uriIds != null && !uriIds.isEmpty();
+        if (withUris) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+        List<String> parts = new ArrayList<>();
+        // BETWEEN включает правую границу, переходим к полуинтервалу [start, end + 1 мкс)
+        collectSegments(start, end.plus(1, ChronoUnit.MICROS), 0, withUris, false, parts, params);
+
+        String sql = "SELECT app_id, uri_id, SUM(hits) AS hits FROM (" + String.join(" UNION ALL ", parts) + ") s " +
+                "GROUP BY app_id, uri_id " +
+                "ORDER BY hits DESC";
+        jdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new StatCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+        });
+    }
+
+    // Хиты (app, uri) по интервалам предагрегатов не крупнее coarsest, чтобы каждую строку можно было
+    // целиком отнести к одному интервалу временного ряда. Края добираются из сырых хитов по минутам.
+    public void streamBuckets(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, TimeBucket coarsest,
+                              Consumer<BucketCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        boolean withUris = uriIds != null && !uriIds.isEmpty();
+        if (withUris) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+        List<String> parts = new ArrayList<>();
+        collectSegments(start, end.plus(1, ChronoUnit.MICROS), COARSE_TO_FINE.indexOf(coarsest), withUris, true,
+                parts, params);
+
+        jdbcTemplate.query(String.join(" UNION ALL ", parts), params, rs -> {
+            consumer.accept(new BucketCount(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+        });
+    }
+
+    private void collectSegments(LocalDateTime from, LocalDateTime to, int level, boolean withUris, boolean bucketed,
+                                 List<String> parts, MapSqlParameterSource params) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        String uriFilter = withUris ? " AND uri_id = ANY(:uriIds)" : "";
+        String fromParam = "from" + parts.size();
+        String toParam = "to" + parts.size();
+        if (level == COARSE_TO_FINE.size()) {
+            String minute = bucketed ? ", date_trunc('minute', timestamp)" : "";
+            parts.add("SELECT app_id, uri_id" + (bucketed ? minute + " AS bucket" : "") + ", COUNT(*) AS hits " +
+                    "FROM statistic " +
+                    "WHERE timestamp >= :" + fromParam + " AND timestamp < :" + toParam + uriFilter +
+                    " GROUP BY app_id, uri_id" + minute);
+            params.addValue(fromParam, Timestamp.valueOf(from));
+            params.addValue(toParam, Timestamp.valueOf(to));
+            return;
+        }
+        TimeBucket bucket = COARSE_TO_FINE.get(level);
+        LocalDateTime alignedFrom = bucket.ceil(from);
+        LocalDateTime alignedTo = bucket.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            collectSegments(from, to, level + 1, withUris, bucketed, parts, params);
+            return;
+        }
+        parts.add("SELECT app_id, uri_id" + (bucketed ? ", bucket" : "") + ", hits FROM " + bucket.getTable() +
+                " WHERE bucket >= :" + fromParam + " AND bucket < :" + toParam + uriFilter);
+        params.addValue(fromParam, Timestamp.valueOf(alignedFrom));
+        params.addValue(toParam, Timestamp.valueOf(alignedTo));
+        collectSegments(from, alignedFrom, level + 1, withUris, bucketed, parts, params);
+        collectSegments(alignedTo, to, level + 1, withUris, bucketed, parts, params);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.model.BucketKey;
+import ru.practicum.ewm.model.StatKey;
+import ru.practicum.ewm.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Таблица statistic_hll: скетч уникальных ip по кодам (uri, день, app)
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+    private static final String UPSERT =
+            "INSERT INTO statistic_hll (uri_id, bucket, app_id, sketch) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET sketch = EXCLUDED.sketch";
+    private static final String INSERT_EMPTY =
+            "INSERT INTO statistic_hll (uri_id, bucket, app_id, sketch) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO NOTHING";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    // Создаёт недостающие строки с пустым скетчем, чтобы их можно было заблокировать перед слиянием
+    public void insertMissing(Collection<BucketKey> keys) {
+        List<BucketKey> rows = new ArrayList<>(new TreeSet<>(keys));
+        byte[] empty = new HyperLogLog().toBytes();
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_EMPTY, rows, rows.size(), (ps, key) -> {
+            ps.setInt(1, key.uriId());
+            ps.setTimestamp(2, Timestamp.valueOf(key.bucket()));
+            ps.setInt(3, key.appId());
+            ps.setBytes(4, empty);
+        });
+    }
+
+    // Скетчи читаются с блокировкой строк до конца транзакции: слияние в памяти не теряет регистры,
+    // сохранённые другим экземпляром сервиса между чтением и записью
+    public Map<BucketKey, HyperLogLog> findByBucketForUpdate(LocalDateTime bucket, Collection<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("bucket", Timestamp.valueOf(bucket))
+                .addValue("uriIds", uriIds.toArray(Integer[]::new));
+        Map<BucketKey, HyperLogLog> sketches = new HashMap<>();
+        jdbcTemplate.query("SELECT uri_id, app_id, sketch FROM statistic_hll WHERE bucket = :bucket AND uri_id = ANY(:uriIds) " +
+                        "ORDER BY uri_id, app_id FOR UPDATE",
+                params, rs -> {
+                    sketches.put(new BucketKey(rs.getInt("uri_id"), bucket, rs.getInt("app_id")),
+                            HyperLogLog.fromBytes(rs.getBytes("sketch")));
+                });
+        return sketches;
+    }
+
+    public void saveAll(Map<BucketKey, HyperLogLog> sketches) {
+        List<Map.Entry<BucketKey, HyperLogLog>> rows = new ArrayList<>(new TreeMap<>(sketches).entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(UPSERT, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getKey().uriId());
+            ps.setTimestamp(2, Timestamp.valueOf(row.getKey().bucket()));
+            ps.setInt(3, row.getKey().appId());
+            ps.setBytes(4, row.getValue().toBytes());
+        });
+    }
+
+    // Сливает в target скетчи всех дней из [from, to)
+    public void mergeRange(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, Map<StatKey, HyperLogLog> target) {
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT app_id, uri_id, sketch FROM statistic_hll WHERE bucket >= :from AND bucket < :to" +
+                uriFilter(uriIds);
+        jdbcTemplate.query(sql, params, rs -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            target.merge(new StatKey(rs.getInt("app_id"), rs.getInt("uri_id")), sketch, (current, added) -> {
+                current.merge(added);
+                return current;
+            });
+        });
+    }
+
+    // Добавляет в target уникальные ip из сырых хитов [from, to)
+    public void offerRawIps(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, Map<StatKey, HyperLogLog> target) {
+        MapSqlParameterSource params = rangeParams(from, to, uriIds);
+        String sql = "SELECT DISTINCT app_id, uri_id, ip FROM statistic WHERE timestamp >= :from AND timestamp < :to" +
+                uriFilter(uriIds);
+        jdbcTemplate.query(sql, params, rs -> {
+            target.computeIfAbsent(new StatKey(rs.getInt("app_id"), rs.getInt("uri_id")), key -> new HyperLogLog())
+                    .offer(rs.getBytes("ip"));
+        });
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        if (uriIds != null && !uriIds.isEmpty()) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+        }
+        return params;
+    }
+
+    private String uriFilter(List<Integer> uriIds) {
+        return uriIds != null && !uriIds.isEmpty() ? " AND uri_id = ANY(:uriIds)" : "";
+    }
+}
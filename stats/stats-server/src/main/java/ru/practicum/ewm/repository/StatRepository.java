@@ -1,49 +1,62 @@
 package ru.practicum.ewm.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
-import ru.practicum.ewm.ViewStatsDto;
 import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.TimeRange;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface StatRepository extends JpaRepository<EndpointHit, Long> {
+// Результаты читаются потоком по курсору, закрывать Stream обязан вызывающий код
+public interface StatRepository extends JpaRepository<EndpointHit, Long>, StatRepositoryCustom {
+    String FETCH_SIZE = "1000";
 
-    @Query("SELECT new ru.practicum.ewm.ViewStatsDto(e.app, e.uri, COUNT(e.id)) " +
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query("SELECT new ru.practicum.ewm.model.StatCount(e.appId, e.uriId, COUNT(e.id)) " +
             "FROM EndpointHit e " +
             "WHERE e.timestamp BETWEEN :start AND :end " +
-            "GROUP BY e.app, e.uri " +
+            "GROUP BY e.appId, e.uriId " +
             "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getStats(@Param("start") LocalDateTime start,
-                                @Param("end") LocalDateTime end);
+    Stream<StatCount> getStats(@Param("start") LocalDateTime start,
+                               @Param("end") LocalDateTime end);
 
-    @Query("SELECT new ru.practicum.ewm.ViewStatsDto(e.app, e.uri, COUNT(distinct e.ip)) " +
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query("SELECT new ru.practicum.ewm.model.StatCount(e.appId, e.uriId, COUNT(distinct e.ip)) " +
             "FROM EndpointHit e " +
             "WHERE e.timestamp BETWEEN :start AND :end " +
-            "GROUP BY e.app, e.uri " +
+            "GROUP BY e.appId, e.uriId " +
             "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getUniqueStats(@Param("start") LocalDateTime start,
-                                      @Param("end") LocalDateTime end);
+    Stream<StatCount> getUniqueStats(@Param("start") LocalDateTime start,
+                                     @Param("end") LocalDateTime end);
 
-    @Query("SELECT new ru.practicum.ewm.ViewStatsDto(e.app, e.uri, COUNT(e.id)) " +
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query("SELECT new ru.practicum.ewm.model.StatCount(e.appId, e.uriId, COUNT(e.id)) " +
             "FROM EndpointHit e " +
-            "WHERE e.timestamp BETWEEN :start AND :end AND e.uri IN :uris " +
-            "GROUP BY e.app, e.uri " +
+            "WHERE e.timestamp BETWEEN :start AND :end AND e.uriId IN :uriIds " +
+            "GROUP BY e.appId, e.uriId " +
             "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getStatsWithUris(@Param("start") LocalDateTime start,
-                                        @Param("end") LocalDateTime end,
-                                        @Param("uris") List<String> uris);
+    Stream<StatCount> getStatsWithUris(@Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end,
+                                       @Param("uriIds") List<Integer> uriIds);
 
-    @Query("SELECT new ru.practicum.ewm.ViewStatsDto(e.app, e.uri, COUNT(distinct e.ip)) " +
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query("SELECT new ru.practicum.ewm.model.StatCount(e.appId, e.uriId, COUNT(distinct e.ip)) " +
             "FROM EndpointHit e " +
-            "WHERE e.timestamp BETWEEN :start AND :end AND e.uri IN :uris " +
-            "GROUP BY e.app, e.uri " +
+            "WHERE e.timestamp BETWEEN :start AND :end AND e.uriId IN :uriIds " +
+            "GROUP BY e.appId, e.uriId " +
             "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getUniqueStatsWithUris(@Param("start") LocalDateTime start,
-                                              @Param("end") LocalDateTime end,
-                                              @Param("uris") List<String> uris);
-
+    Stream<StatCount> getUniqueStatsWithUris(@Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end,
+                                             @Param("uriIds") List<Integer> uriIds);
 
+    // Время первого и последнего хита; обе границы null, если хитов нет
+    @Query("SELECT new ru.practicum.ewm.model.TimeRange(MIN(e.timestamp), MAX(e.timestamp)) FROM EndpointHit e")
+    TimeRange findHitSpan();
 }
@@ -0,0 +1,18 @@
+package ru.practicum.ewm.repository;
+
+import ru.practicum.ewm.model.BucketCount;
+import ru.practicum.ewm.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface StatRepositoryCustom {
+    // Пакетная вставка хитов через JDBC batch в текущей транзакции
+    void insertAll(List<EndpointHit> hits);
+
+    // Один сгруппированный проход по сырым хитам: число хитов или уникальных ip (app, uri) в каждом
+    // интервале длиной seconds, отсчитанном от origin
+    void streamSeries(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                      LocalDateTime origin, long seconds, Consumer<BucketCount> consumer);
+}
@@ -0,0 +1,102 @@
+package ru.practicum.ewm.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.ewm.model.BucketCount;
+import ru.practicum.ewm.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+public class StatRepositoryCustomImpl implements StatRepositoryCustom {
+    private static final String INSERT_HIT =
+            "INSERT INTO statistic (id, app_id, uri_id, ip, timestamp) VALUES (?, ?, ?, ?, ?)";
+    private static final String NEXT_ID_BLOCK = "SELECT nextval('statistic_seq')";
+    // Должно совпадать с INCREMENT BY у statistic_seq и allocationSize у EndpointHit
+    private static final int ID_ALLOCATION_SIZE = 50;
+    // Номер интервала считается в подзапросе: одно выражение с параметрами в SELECT и GROUP BY
+    // PostgreSQL считает разными выражениями
+    private static final String SERIES =
+            "SELECT app_id, uri_id, idx, %s AS hits FROM (" +
+            "SELECT app_id, uri_id, ip, FLOOR(EXTRACT(EPOCH FROM (timestamp - CAST(:origin AS TIMESTAMP))) / :seconds) AS idx " +
+            "FROM statistic WHERE timestamp BETWEEN :start AND :end%s) s " +
+            "GROUP BY app_id, uri_id, idx";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final int batchSize;
+
+    // Блокировка вместо synchronized: при запросе блока из БД виртуальный поток не закрепляется за несущим
+    private final Lock idLock = new ReentrantLock();
+    private long nextId;
+    private long maxId = -1;
+
+    public StatRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                    @Value("${stats.jdbc.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void insertAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            hit.setId(nextId());
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (ps, hit) -> {
+            ps.setLong(1, hit.getId());
+            ps.setInt(2, hit.getAppId());
+            ps.setInt(3, hit.getUriId());
+            ps.setBytes(4, hit.getIp());
+            ps.setTimestamp(5, Timestamp.valueOf(hit.getTimestamp()));
+        });
+        log.debug("Пакетно сохранено {} хитов", hits.size());
+    }
+
+    @Override
+    public void streamSeries(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                             LocalDateTime origin, long seconds, Consumer<BucketCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("origin", Timestamp.valueOf(origin))
+                .addValue("seconds", seconds);
+        String uriFilter = "";
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+            uriFilter = " AND uri_id = ANY(:uriIds)";
+        }
+        String sql = SERIES.formatted(unique ? "COUNT(DISTINCT ip)" : "COUNT(*)", uriFilter);
+        namedJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new BucketCount(rs.getInt("app_id"), rs.getInt("uri_id"),
+                    origin.plusSeconds(rs.getLong("idx") * seconds), rs.getLong("hits")));
+        });
+    }
+
+    // Блоки идентификаторов выдаются так же, как оптимизатором pooled-lo в Hibernate:
+    // значение последовательности v резервирует диапазон [v, v + ID_ALLOCATION_SIZE)
+    private long nextId() {
+        idLock.lock();
+        try {
+            if (nextId > maxId) {
+                Long blockStart = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Long.class);
+                nextId = blockStart;
+                maxId = blockStart + ID_ALLOCATION_SIZE - 1;
+            }
+            return nextId++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum.ewm.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Таблица statistic_visitor: первый и последний визит каждого ip на каждый (app, uri)
+@Repository
+@RequiredArgsConstructor
+public class VisitorRepository {
+    private static final String UPSERT =
+            "INSERT INTO statistic_visitor (uri_id, app_id, ip, first_seen, last_seen) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, app_id, ip) DO UPDATE SET " +
+            "first_seen = LEAST(statistic_visitor.first_seen, EXCLUDED.first_seen), " +
+            "last_seen = GREATEST(statistic_visitor.last_seen, EXCLUDED.last_seen)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addHits(List<EndpointHit> hits) {
+        // Сортировка ключей задаёт единый порядок блокировок строк для параллельных транзакций
+        Map<VisitorKey, Visit> visits = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            visits.merge(new VisitorKey(hit.getUriId(), hit.getAppId(), ByteBuffer.wrap(hit.getIp())),
+                    new Visit(hit.getTimestamp(), hit.getTimestamp()), Visit::union);
+        }
+        List<Map.Entry<VisitorKey, Visit>> rows = new ArrayList<>(visits.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(UPSERT, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getKey().uriId());
+            ps.setInt(2, row.getKey().appId());
+            ps.setBytes(3, row.getKey().ip().array());
+            ps.setTimestamp(4, Timestamp.valueOf(row.getValue().firstSeen()));
+            ps.setTimestamp(5, Timestamp.valueOf(row.getValue().lastSeen()));
+        });
+    }
+
+    // Посетитель попал в [start, end], если туда попал первый или последний визит.
+    // Если же интервал визитов целиком накрывает [start, end], наличие хита проверяется по сырой таблице.
+    public void streamUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                  Consumer<StatCount> consumer) {
+        streamUniqueStats(start, end, uriIds, 0, 1, consumer);
+    }
+
+    // Только uri с кодом, дающим остаток shard при делении на shards: для параллельного подсчёта по частям
+    public void streamUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, int shard, int shards,
+                                  Consumer<StatCount> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String uriFilter = "";
+        if (uriIds != null && !uriIds.isEmpty()) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+            uriFilter = "AND v.uri_id = ANY(:uriIds) ";
+        }
+        if (shards > 1) {
+            params.addValue("shard", shard)
+                    .addValue("shards", shards);
+            uriFilter += "AND v.uri_id % :shards = :shard ";
+        }
+        String sql = "SELECT v.app_id, v.uri_id, COUNT(*) AS hits " +
+                "FROM statistic_visitor v " +
+                "WHERE v.first_seen <= :end AND v.last_seen >= :start " + uriFilter +
+                "AND (v.first_seen >= :start OR v.last_seen <= :end OR EXISTS (" +
+                "SELECT 1 FROM statistic s " +
+                "WHERE s.uri_id = v.uri_id AND s.app_id = v.app_id AND s.ip = v.ip AND s.timestamp BETWEEN :start AND :end)) " +
+                "GROUP BY v.app_id, v.uri_id " +
+                "ORDER BY hits DESC";
+        jdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(new StatCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+        });
+    }
+
+    // Есть ли посетитель, визиты которого начались до start и закончились после end: попал ли он в [start, end],
+    // можно узнать только по сырым хитам
+    public boolean hasVisitsSpanning(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String uriFilter = "";
+        if (uriIds != null && !uriIds.isEmpty()) {
+            params.addValue("uriIds", uriIds.toArray(Integer[]::new));
+            uriFilter = " AND uri_id = ANY(:uriIds)";
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM statistic_visitor " +
+                "WHERE first_seen < :start AND last_seen > :end" + uriFilter + ")", params, Boolean.class));
+    }
+
+    // ByteBuffer сравнивает ip по содержимому, а не по ссылке на массив
+    private record VisitorKey(int uriId, int appId, ByteBuffer ip) implements Comparable<VisitorKey> {
+        private static final Comparator<VisitorKey> ORDER = Comparator.comparingInt(VisitorKey::uriId)
+                .thenComparingInt(VisitorKey::appId)
+                .thenComparing(VisitorKey::ip);
+
+        @Override
+        public int compareTo(VisitorKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    private record Visit(LocalDateTime firstSeen, LocalDateTime lastSeen) {
+        Visit union(Visit other) {
+            return new Visit(firstSeen.isBefore(other.firstSeen) ? firstSeen : other.firstSeen,
+                    lastSeen.isAfter(other.lastSeen) ? lastSeen : other.lastSeen);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.practicum.ewm.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.model.BucketKey;
+import ru.practicum.ewm.model.TimeBucket;
+import ru.practicum.ewm.repository.CompactionRepository;
+import ru.practicum.ewm.repository.CompactionRepository.Batch;
+import ru.practicum.ewm.repository.CompactionRepository.RawKey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Сжатие старых хитов. Суточные счётчики statistic_day и скетчи statistic_hll ведутся при записи,
+// поэтому сырые хиты и минутные/часовые агрегаты старше older-than-days только удаляются пачками.
+// Сначала сдвигается граница сжатия, затем удаляются данные: запросы к старому периоду
+// к этому моменту уже читают только суточные агрегаты
+@Slf4j
+@Service
+public class CompactionService {
+    private static final List<TimeBucket> DOWNSAMPLED = List.of(TimeBucket.MINUTE, TimeBucket.HOUR);
+
+    private final CompactionRepository compactionRepository;
+    private final StatsCache statsCache;
+    private final boolean enabled;
+    private final boolean aggregatesEnabled;
+    private final int olderThanDays;
+    private final int batchSize;
+
+    // Хиты раньше этой границы доступны только в суточных агрегатах; null - сжатия не было
+    private volatile LocalDateTime horizon;
+
+    public CompactionService(CompactionRepository compactionRepository,
+                             StatsCache statsCache,
+                             @Value("${stats.compaction.enabled:false}") boolean enabled,
+                             @Value("${stats.aggregates.enabled:true}") boolean aggregatesEnabled,
+                             @Value("${stats.compaction.older-than-days:90}") int olderThanDays,
+                             @Value("${stats.compaction.batch-size:5000}") int batchSize) {
+        this.compactionRepository = compactionRepository;
+        this.statsCache = statsCache;
+        this.enabled = enabled;
+        this.aggregatesEnabled = aggregatesEnabled;
+        this.olderThanDays = olderThanDays;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void loadHorizon() {
+        // Без агрегатов (H2) сжатие невозможно: статистика считается только по сырым хитам
+        if (aggregatesEnabled) {
+            horizon = compactionRepository.findHorizon().orElse(null);
+        }
+    }
+
+    public LocalDateTime getHorizon() {
+        return horizon;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.compaction.interval-ms:3600000}")
+    public void compact() {
+        if (!enabled || !aggregatesEnabled) {
+            return;
+        }
+        try {
+            advanceHorizon(TimeBucket.DAY.floor(LocalDateTime.now()).minusDays(olderThanDays));
+            long raw = deleteRaw();
+            long rollups = 0;
+            for (TimeBucket bucket : DOWNSAMPLED) {
+                rollups += deleteRollups(bucket);
+            }
+            log.info("Сжатие хитов до {}: удалено {} сырых хитов и {} строк агрегатов", horizon, raw, rollups);
+        } catch (DataAccessException e) {
+            log.error("Не удалось выполнить сжатие хитов: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    // Сдвигает границу сжатия не раньше target. Вызывается и перед удалением секций сырых хитов:
+    // запросы к удалённому периоду должны читать суточные агрегаты. Без агрегатов сдвигать некуда - false
+    public synchronized boolean advanceHorizon(LocalDateTime target) {
+        if (!aggregatesEnabled) {
+            return false;
+        }
+        // Граница могла сдвинуться другим экземпляром сервиса
+        LocalDateTime current = compactionRepository.findHorizon().orElse(null);
+        if (current != null && !target.isAfter(current)) {
+            horizon = current;
+            return true;
+        }
+        compactionRepository.saveHorizon(target);
+        horizon = target;
+        // Края диапазонов в сжатом периоде теперь округляются до суток, прежние результаты устарели
+        statsCache.invalidateAll();
+        return true;
+    }
+
+    private long deleteRaw() {
+        long deleted = 0;
+        RawKey after = null;
+        while (true) {
+            Batch<RawKey> batch = compactionRepository.deleteRawBatch(horizon, after, batchSize);
+            if (batch.deleted() == 0) {
+                return deleted;
+            }
+            deleted += batch.deleted();
+            after = batch.last();
+        }
+    }
+
+    private long deleteRollups(TimeBucket bucket) {
+        long deleted = 0;
+        BucketKey after = null;
+        while (true) {
+            Batch<BucketKey> batch = compactionRepository.deleteRollupBatch(bucket, horizon, after, batchSize);
+            if (batch.deleted() == 0) {
+                return deleted;
+            }
+            deleted += batch.deleted();
+            after = batch.last();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.practicum.ewm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Буфер отложенной записи: хиты копятся в ограниченной очереди и пишутся пачками фоновым потоком
+@Slf4j
+@Component
+public class HitBuffer {
+    private final HitWriter hitWriter;
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final int highWaterMark;
+    private final BlockingQueue<EndpointHit> queue;
+
+    private final Counter flushedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private volatile Thread flusher;
+
+    public HitBuffer(HitWriter hitWriter,
+                     MeterRegistry meterRegistry,
+                     @Value("${stats.ingest.buffered:false}") boolean enabled,
+                     @Value("${stats.ingest.buffer.capacity:10000}") int capacity,
+                     @Value("${stats.ingest.buffer.flush-size:500}") int flushSize,
+                     @Value("${stats.ingest.buffer.flush-interval-ms:200}") long flushIntervalMs,
+                     @Value("${stats.ingest.buffer.high-water-mark:8000}") int highWaterMark) {
+        this.hitWriter = hitWriter;
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.highWaterMark = Math.min(highWaterMark, capacity);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("stats.ingest.buffer.depth", queue, BlockingQueue::size)
+                .description("Количество хитов, ожидающих записи")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("stats.ingest.buffer.flushed")
+                .description("Хиты, записанные фоновым потоком")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("stats.ingest.buffer.failed")
+                .description("Хиты, которые не удалось записать")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("stats.ingest.buffer.flush")
+                .description("Длительность записи одной пачки")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "stats-hit-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Буферизованная запись хитов включена: размер пачки = {}, интервал = {} мс",
+                flushSize, flushIntervalMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Выше отметки high-water-mark новые хиты не принимаются, пока фоновый поток не разгрузит очередь:
+    // клиент получает быстрый отказ, а не ожидание переполненной очереди
+    public Admission offer(EndpointHit hit) {
+        if (queue.size() >= highWaterMark) {
+            return Admission.THROTTLED;
+        }
+        if (!queue.offer(hit)) {
+            return Admission.REJECTED;
+        }
+        // Набралась полная пачка - будим фоновый поток, не дожидаясь интервала
+        if (queue.size() >= flushSize) {
+            LockSupport.unpark(flusher);
+        }
+        return Admission.ACCEPTED;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        // Если фоновый поток не успел, дописываем остаток в текущем потоке
+        int written = drain();
+        log.info("Буфер хитов остановлен, при остановке дописано {} хитов", written);
+    }
+
+    private void flushLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            long deadline = System.nanoTime() + intervalNanos;
+            long remaining = intervalNanos;
+            while (running && queue.size() < flushSize && remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            drain();
+        }
+    }
+
+    // Записывает всё содержимое очереди пачками не больше flushSize
+    private synchronized int drain() {
+        int written = 0;
+        List<EndpointHit> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            flush(batch);
+            written += batch.size();
+            batch = new ArrayList<>(flushSize);
+        }
+        return written;
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        try {
+            flushTimer.record(() -> hitWriter.write(batch));
+            flushedCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.error("Не удалось записать пачку из {} хитов: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    public enum Admission {
+        ACCEPTED,
+        // Очередь выше отметки high-water-mark
+        THROTTLED,
+        // Очередь заполнена полностью
+        REJECTED
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.ewm.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.repository.RollupRepository;
+import ru.practicum.ewm.repository.StatRepository;
+import ru.practicum.ewm.repository.VisitorRepository;
+
+import java.util.List;
+
+// Единая точка записи хитов в хранилище статистики
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final StatRepository statRepository;
+    private final RollupRepository rollupRepository;
+    private final VisitorRepository visitorRepository;
+    private final SketchService sketchService;
+    private final TopService topService;
+    private final LiveStatsService liveStatsService;
+    private final StatsCache statsCache;
+    private final ParallelStatsExecutor parallelStatsExecutor;
+
+    // Агрегаты ведутся через upsert PostgreSQL; на H2 пишутся только сырые хиты
+    @Value("${stats.aggregates.enabled:true}")
+    private boolean aggregatesEnabled;
+
+    @Transactional
+    public void write(List<EndpointHit> hits) {
+        statRepository.insertAll(hits);
+        // Счётчики в памяти не откатываются, поэтому учитывают только зафиксированные хиты
+        afterCommit(() -> {
+            topService.addHits(hits);
+            liveStatsService.addHits(hits);
+        });
+        statsCache.invalidateAfterCommit(hits);
+        afterCommit(() -> parallelStatsExecutor.recordHits(hits));
+        if (!aggregatesEnabled) {
+            return;
+        }
+        rollupRepository.addHits(hits);
+        visitorRepository.addHits(hits);
+        afterCommit(() -> sketchService.addHits(hits));
+    }
+
+    // Действие выполняется только после фиксации транзакции записи: откаченная пачка не учитывается
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
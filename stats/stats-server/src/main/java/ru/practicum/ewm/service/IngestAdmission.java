@@ -0,0 +1,96 @@
+package ru.practicum.ewm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.exception.OverloadException;
+import ru.practicum.ewm.model.EndpointHit;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Контроль допуска на запись хитов. Синхронная запись ограничена числом одновременных записей,
+// буферизованная - отметкой high-water-mark очереди. При перегрузке запрос сразу отклоняется:
+// 429 - превышен лимит, стоит повторить позже; 503 - очередь заполнена полностью
+@Slf4j
+@Component
+public class IngestAdmission {
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final Semaphore writePermits;
+    private final long admissionTimeoutMs;
+    private final long retryAfterSeconds;
+
+    private final Counter acceptedCounter;
+    private final Counter throttledCounter;
+    private final Counter rejectedCounter;
+
+    public IngestAdmission(HitWriter hitWriter,
+                           HitBuffer hitBuffer,
+                           MeterRegistry meterRegistry,
+                           @Value("${stats.ingest.max-concurrent-writes:8}") int maxConcurrentWrites,
+                           @Value("${stats.ingest.admission-timeout-ms:50}") long admissionTimeoutMs,
+                           @Value("${stats.ingest.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.hitWriter = hitWriter;
+        this.hitBuffer = hitBuffer;
+        this.writePermits = new Semaphore(maxConcurrentWrites);
+        this.admissionTimeoutMs = admissionTimeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.acceptedCounter = counter(meterRegistry, "accepted", "Принятые хиты");
+        this.throttledCounter = counter(meterRegistry, "throttled", "Хиты, отклонённые по лимиту (429)");
+        this.rejectedCounter = counter(meterRegistry, "rejected", "Хиты, отклонённые при заполненной очереди (503)");
+    }
+
+    // Синхронная запись: ожидание разрешения не дольше admission-timeout-ms,
+    // чтобы медленная БД не копила запросы в потоках сервера
+    public void write(List<EndpointHit> hits) {
+        boolean acquired;
+        try {
+            acquired = writePermits.tryAcquire(admissionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw throttled(hits.size());
+        }
+        try {
+            hitWriter.write(hits);
+            acceptedCounter.increment(hits.size());
+        } finally {
+            writePermits.release();
+        }
+    }
+
+    // Буферизованная запись: хит ставится в очередь фонового потока
+    public void offer(EndpointHit hit) {
+        switch (hitBuffer.offer(hit)) {
+            case ACCEPTED -> acceptedCounter.increment();
+            case THROTTLED -> throw throttled(1);
+            case REJECTED -> {
+                rejectedCounter.increment();
+                log.warn("Буфер хитов заполнен, хит отклонён");
+                throw new OverloadException(HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds,
+                        "Очередь записи хитов заполнена");
+            }
+        }
+    }
+
+    private OverloadException throttled(int hits) {
+        throttledCounter.increment(hits);
+        return new OverloadException(HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds,
+                "Превышен лимит записи хитов, повторите позже");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String description) {
+        return Counter.builder("stats.ingest.hits")
+                .tag("result", result)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
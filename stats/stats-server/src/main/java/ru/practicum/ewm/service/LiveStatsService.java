@@ -0,0 +1,80 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.LiveCount;
+import ru.practicum.ewm.sketch.SlidingWindowCounter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Просмотры uri за последнюю минуту, 15 минут и час без обращения к БД.
+// Счётчики ведутся в памяти по хитам, прошедшим через этот экземпляр сервиса с момента запуска.
+// Время хита берётся из его timestamp; хиты из будущего учитываются в текущей секунде
+@Slf4j
+@Service
+public class LiveStatsService {
+    private static final int MINUTE = 60;
+    private static final int QUARTER_HOUR = 15 * 60;
+    private static final int HOUR = 60 * 60;
+
+    private final boolean enabled;
+    private final int stripes;
+    private final Map<Integer, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+
+    public LiveStatsService(@Value("${stats.live.enabled:true}") boolean enabled,
+                            @Value("${stats.live.stripes:2}") int stripes) {
+        this.enabled = enabled;
+        this.stripes = stripes;
+    }
+
+    public void addHits(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        long now = epochSecond(LocalDateTime.now());
+        for (EndpointHit hit : hits) {
+            long second = Math.min(epochSecond(hit.getTimestamp()), now);
+            if (second > now - HOUR) {
+                counters.computeIfAbsent(hit.getUriId(), uriId -> new SlidingWindowCounter(stripes)).add(second);
+            }
+        }
+    }
+
+    // Счётчики по каждому из uriIds; uriIds == null - по всем uri с хитами за последний час
+    public List<LiveCount> getLive(Collection<Integer> uriIds) {
+        long now = epochSecond(LocalDateTime.now());
+        Collection<Integer> ids = uriIds == null ? counters.keySet() : uriIds;
+        List<LiveCount> result = new ArrayList<>(ids.size());
+        for (Integer uriId : ids) {
+            SlidingWindowCounter counter = counters.get(uriId);
+            if (counter != null) {
+                result.add(new LiveCount(uriId, counter.count(now, MINUTE), counter.count(now, QUARTER_HOUR),
+                        counter.count(now, HOUR)));
+            }
+        }
+        return result;
+    }
+
+    // Счётчики uri без хитов за последний час удаляются. Хит, пришедший одновременно с удалением,
+    // может попасть в уже удалённый счётчик и не войти в живую статистику - в БД он записан
+    @Scheduled(fixedDelayString = "${stats.live.eviction-interval-ms:300000}")
+    public void evictIdle() {
+        long now = epochSecond(LocalDateTime.now());
+        int before = counters.size();
+        counters.entrySet().removeIf(entry -> entry.getValue().count(now, HOUR) == 0);
+        log.debug("Удалено {} неактивных счётчиков живой статистики", before - counters.size());
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
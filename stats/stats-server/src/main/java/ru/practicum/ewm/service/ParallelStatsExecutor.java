@@ -0,0 +1,243 @@
+package ru.practicum.ewm.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.dictionary.StatDictionary;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.StatKey;
+import ru.practicum.ewm.model.TimeBucket;
+import ru.practicum.ewm.model.TimeRange;
+import ru.practicum.ewm.repository.RollupRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Параллельный подсчёт широких диапазонов: запрос делится на части, которые выполняются одновременно
+// в ограниченном пуле, а частичные счётчики (app, uri) складываются. Хиты делятся по времени -
+// суммы по непересекающимся периодам складываются. Уникальные посетители делятся по uri:
+// один посетитель может попасть в несколько периодов, но не в несколько uri.
+// Делится только объёмный запрос: оценка - число uri, умноженное на число суток с хитами внутри диапазона,
+// поэтому запрос "за 100 лет" по одному событию выполняется целиком в потоке запроса
+@Slf4j
+@Component
+public class ParallelStatsExecutor {
+    private final boolean enabled;
+    private final int parallelism;
+    private final long minSpanDays;
+    private final long minDayRows;
+    private final ExecutorService executor;
+    // Поток запроса держит своё соединение, пока ждёт части, поэтому одновременно делится не больше
+    // max-concurrent запросов: остальные выполняют те же части по очереди в своём потоке
+    private final Semaphore permits;
+    private final RollupRepository rollupRepository;
+    private final StatDictionary statDictionary;
+    private final boolean aggregatesEnabled;
+
+    // Сутки с хитами: известны после загрузки и расширяются зафиксированными хитами
+    private volatile LocalDateTime firstDay;
+    private volatile LocalDateTime lastDay;
+
+    public ParallelStatsExecutor(RollupRepository rollupRepository,
+                                 StatDictionary statDictionary,
+                                 @Value("${stats.aggregates.enabled:true}") boolean aggregatesEnabled,
+                                 @Value("${stats.parallel.enabled:true}") boolean enabled,
+                                 @Value("${stats.parallel.threads:4}") int parallelism,
+                                 @Value("${stats.parallel.max-concurrent:2}") int maxConcurrent,
+                                 @Value("${stats.parallel.min-span-days:31}") long minSpanDays,
+                                 @Value("${stats.parallel.min-day-rows:100000}") long minDayRows) {
+        this.rollupRepository = rollupRepository;
+        this.statDictionary = statDictionary;
+        this.aggregatesEnabled = aggregatesEnabled;
+        this.enabled = enabled && parallelism > 1 && maxConcurrent > 0;
+        this.parallelism = parallelism;
+        this.minSpanDays = minSpanDays;
+        this.minDayRows = minDayRows;
+        this.permits = new Semaphore(Math.max(maxConcurrent, 0));
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Каждая часть занимает соединение с БД, поэтому пул ограничен и меньше пула соединений
+        this.executor = this.enabled ? Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "stats-query-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @PostConstruct
+    public void loadDaySpan() {
+        if (enabled && aggregatesEnabled) {
+            rollupRepository.findDaySpan().ifPresent(span -> {
+                firstDay = span.from();
+                lastDay = span.to();
+            });
+        }
+    }
+
+    // Вызывается после фиксации пачки хитов
+    public synchronized void recordHits(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            LocalDateTime day = TimeBucket.DAY.floor(hit.getTimestamp());
+            if (firstDay == null || day.isBefore(firstDay)) {
+                firstDay = day;
+            }
+            if (lastDay == null || day.isAfter(lastDay)) {
+                lastDay = day;
+            }
+        }
+    }
+
+    public boolean shouldSplit(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        if (!enabled) {
+            return false;
+        }
+        TimeRange span = dataSpan(start, end);
+        if (span == null) {
+            return false;
+        }
+        long days = Duration.between(span.from(), span.to()).toDays() + 1;
+        long uris = uriIds == null ? statDictionary.uriCount() : uriIds.size();
+        return days >= minSpanDays && uris * days >= minDayRows;
+    }
+
+    // Части по остатку от кода uri имеют смысл, только если uri не меньше, чем частей
+    public boolean shouldSplitByUri(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        return (uriIds == null || uriIds.size() >= parallelism) && shouldSplit(start, end, uriIds);
+    }
+
+    // Делятся только сутки с хитами: первая часть начинается со start, последняя заканчивается в end.
+    // Конец каждой части, кроме последней, на 1 мкс раньше начала следующей, так как границы диапазона включаются
+    public List<StatCount> splitByTime(LocalDateTime start, LocalDateTime end, RangeQuery query) {
+        TimeRange span = Objects.requireNonNullElse(dataSpan(start, end), new TimeRange(start, end));
+        LocalDateTime from = TimeBucket.DAY.floor(span.from());
+        long days = Duration.between(from, span.to()).toDays() + 1;
+        long step = Math.max(1, (days + parallelism - 1) / parallelism);
+        List<Task> tasks = new ArrayList<>();
+        LocalDateTime partStart = start;
+        for (int part = 1; part < parallelism; part++) {
+            LocalDateTime next = from.plusDays(step * part);
+            if (!next.isAfter(partStart) || next.isAfter(span.to())) {
+                continue;
+            }
+            LocalDateTime partFrom = partStart;
+            LocalDateTime partEnd = next.minus(1, ChronoUnit.MICROS);
+            tasks.add(consumer -> query.run(partFrom, partEnd, consumer));
+            partStart = next;
+        }
+        LocalDateTime lastFrom = partStart;
+        tasks.add(consumer -> query.run(lastFrom, end, consumer));
+        return run(tasks);
+    }
+
+    // Части - непересекающиеся множества uri по остатку от деления кода uri на число частей
+    public List<StatCount> splitByUri(UriShardQuery query) {
+        List<Task> tasks = new ArrayList<>();
+        for (int shard = 0; shard < parallelism; shard++) {
+            int current = shard;
+            tasks.add(consumer -> query.run(current, parallelism, consumer));
+        }
+        return run(tasks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Пересечение [start, end] с сутками, за которые есть хиты; null, если хитов в диапазоне нет
+    private TimeRange dataSpan(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime first = firstDay;
+        LocalDateTime last = lastDay;
+        if (first == null || last == null) {
+            return null;
+        }
+        LocalDateTime lastEnd = last.plusDays(1).minus(1, ChronoUnit.MICROS);
+        LocalDateTime from = start.isAfter(first) ? start : first;
+        LocalDateTime to = end.isBefore(lastEnd) ? end : lastEnd;
+        return from.isAfter(to) ? null : new TimeRange(from, to);
+    }
+
+    private List<StatCount> run(List<Task> tasks) {
+        if (!permits.tryAcquire()) {
+            log.debug("Все разрешения на параллельный подсчёт заняты, {} частей выполняются по очереди", tasks.size());
+            Map<StatKey, Long> counts = new HashMap<>();
+            tasks.forEach(task -> task.run(count -> counts.merge(new StatKey(count.appId(), count.uriId()),
+                    count.hits(), Long::sum)));
+            return toSortedCounts(counts);
+        }
+        try {
+            return runParallel(tasks);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private List<StatCount> runParallel(List<Task> tasks) {
+        List<Future<Map<StatKey, Long>>> futures = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            futures.add(executor.submit(() -> {
+                Map<StatKey, Long> counts = new HashMap<>();
+                task.run(count -> counts.merge(new StatKey(count.appId(), count.uriId()), count.hits(), Long::sum));
+                return counts;
+            }));
+        }
+        Map<StatKey, Long> merged = new HashMap<>();
+        try {
+            for (Future<Map<StatKey, Long>> future : futures) {
+                future.get().forEach((key, hits) -> merged.merge(key, hits, Long::sum));
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Подсчёт статистики прерван", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        log.debug("Статистика посчитана в {} частях", tasks.size());
+        return toSortedCounts(merged);
+    }
+
+    private List<StatCount> toSortedCounts(Map<StatKey, Long> merged) {
+        return merged.entrySet().stream()
+                .map(entry -> new StatCount(entry.getKey().appId(), entry.getKey().uriId(), entry.getValue()))
+                .sorted(Comparator.comparingLong(StatCount::hits).reversed())
+                .toList();
+    }
+
+    private interface Task {
+        void run(Consumer<StatCount> consumer);
+    }
+
+    public interface RangeQuery {
+        void run(LocalDateTime start, LocalDateTime end, Consumer<StatCount> consumer);
+    }
+
+    public interface UriShardQuery {
+        void run(int shard, int shards, Consumer<StatCount> consumer);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.ewm.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.PartitionInterval;
+import ru.practicum.ewm.repository.PartitionRepository;
+import ru.practicum.ewm.repository.PartitionRepository.Partition;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Обслуживание секций statistic: заранее создаёт секции на ближайшие интервалы
+// и удаляет целые секции старше срока хранения вместо построчного DELETE
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "stats.partitions.enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionManager {
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final PartitionRepository partitionRepository;
+    private final CompactionService compactionService;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionInterval interval;
+    private final int premake;
+    private final int retention;
+
+    public PartitionManager(PartitionRepository partitionRepository,
+                            CompactionService compactionService,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${stats.partitions.interval:MONTH}") PartitionInterval interval,
+                            @Value("${stats.partitions.premake:3}") int premake,
+                            @Value("${stats.partitions.retention:0}") int retention) {
+        this.partitionRepository = partitionRepository;
+        this.compactionService = compactionService;
+        this.transactionTemplate = transactionTemplate;
+        this.interval = interval;
+        this.premake = premake;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        LocalDateTime current = interval.floor(LocalDateTime.now());
+        List<Partition> partitions = partitionRepository.findAll();
+        createAhead(current, partitions);
+        // retention = 0 - хранить все секции
+        if (retention > 0) {
+            dropExpired(interval.plus(current, -retention), partitions);
+        }
+    }
+
+    private void createAhead(LocalDateTime current, List<Partition> partitions) {
+        for (int i = 0; i <= premake; i++) {
+            LocalDateTime from = interval.plus(current, i);
+            LocalDateTime to = interval.plus(current, i + 1);
+            // Диапазон уже покрыт, возможно секцией с прежней длиной интервала
+            if (partitions.stream().anyMatch(p -> p.overlaps(from, to))) {
+                continue;
+            }
+            String name = "statistic_p" + from.format(NAME_FORMAT);
+            try {
+                transactionTemplate.executeWithoutResult(status -> partitionRepository.create(name, from, to));
+                log.info("Создана секция {} для хитов с {} по {}", name, from, to);
+            } catch (DataAccessException e) {
+                log.error("Не удалось создать секцию {}: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private void dropExpired(LocalDateTime cutoff, List<Partition> partitions) {
+        List<Partition> expired = partitions.stream()
+                .filter(p -> !p.to().isAfter(cutoff))
+                .toList();
+        if (expired.isEmpty()) {
+            return;
+        }
+        // Сначала граница сжатия сдвигается за удаляемые секции: запросы к этому периоду
+        // переходят на суточные агрегаты и скетчи и не видят частично удалённых хитов
+        LocalDateTime upper = expired.stream().map(Partition::to).max(LocalDateTime::compareTo).orElseThrow();
+        try {
+            if (!compactionService.advanceHorizon(upper)) {
+                log.warn("Секции до {} не удалены: без агрегатов статистика за этот период будет потеряна", upper);
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.error("Не удалось сдвинуть границу сжатия до {}: {}", upper, e.getMostSpecificCause().getMessage());
+            return;
+        }
+        for (Partition partition : expired) {
+            try {
+                partitionRepository.drop(partition.name());
+                log.info("Удалена секция {} с хитами до {}", partition.name(), partition.to());
+            } catch (DataAccessException e) {
+                log.error("Не удалось удалить секцию {}: {}", partition.name(), e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+}
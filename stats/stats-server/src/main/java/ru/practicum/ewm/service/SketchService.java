@@ -0,0 +1,128 @@
+package ru.practicum.ewm.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.model.BucketKey;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.StatKey;
+import ru.practicum.ewm.model.TimeBucket;
+import ru.practicum.ewm.repository.SketchRepository;
+import ru.practicum.ewm.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Приближённый подсчёт уникальных посетителей по дневным скетчам HyperLogLog
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SketchService {
+    private final SketchRepository sketchRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Приращения скетчей, ещё не сохранённые в БД
+    private final Map<BucketKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+    // Приращения, которые сохраняются прямо сейчас: остаются видимыми для чтения до фиксации транзакции
+    private final Map<BucketKey, HyperLogLog> persisting = new ConcurrentHashMap<>();
+
+    public void addHits(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            BucketKey key = new BucketKey(hit.getUriId(), TimeBucket.DAY.floor(hit.getTimestamp()), hit.getAppId());
+            pending.compute(key, (k, sketch) -> {
+                HyperLogLog target = sketch == null ? new HyperLogLog() : sketch;
+                target.offer(hit.getIp());
+                return target;
+            });
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.hll.persist-interval-ms:5000}")
+    public synchronized void persist() {
+        for (BucketKey key : pending.keySet()) {
+            // Перенос атомарен относительно addHits: ключ всегда виден хотя бы в одной из карт
+            pending.computeIfPresent(key, (k, sketch) -> {
+                persisting.put(k, sketch);
+                return null;
+            });
+        }
+        if (persisting.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> mergeAndSave(persisting));
+            log.debug("Сохранено {} скетчей уникальных посетителей", persisting.size());
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить скетчи уникальных посетителей: {}", e.getMessage());
+            persisting.forEach((key, sketch) -> pending.merge(key, sketch, SketchService::union));
+        } finally {
+            persisting.clear();
+        }
+    }
+
+    public List<StatCount> getUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        // BETWEEN включает правую границу, переходим к полуинтервалу [start, end + 1 мкс)
+        LocalDateTime to = end.plus(1, ChronoUnit.MICROS);
+        LocalDateTime daysFrom = TimeBucket.DAY.ceil(start);
+        LocalDateTime daysTo = TimeBucket.DAY.floor(to);
+        Map<StatKey, HyperLogLog> merged = new HashMap<>();
+
+        if (daysFrom.isBefore(daysTo)) {
+            // Память читается раньше БД: приращение, ушедшее из памяти, к этому моменту уже зафиксировано
+            mergeInMemory(pending, daysFrom, daysTo, uriIds, merged);
+            mergeInMemory(persisting, daysFrom, daysTo, uriIds, merged);
+            sketchRepository.mergeRange(daysFrom, daysTo, uriIds, merged);
+            // Неполные дни по краям добираются из сырых хитов
+            sketchRepository.offerRawIps(start, daysFrom, uriIds, merged);
+            sketchRepository.offerRawIps(daysTo, to, uriIds, merged);
+        } else {
+            sketchRepository.offerRawIps(start, to, uriIds, merged);
+        }
+
+        return merged.entrySet().stream()
+                .map(e -> new StatCount(e.getKey().appId(), e.getKey().uriId(), e.getValue().estimate()))
+                .sorted(Comparator.comparingLong(StatCount::hits).reversed())
+                .toList();
+    }
+
+    private void mergeAndSave(Map<BucketKey, HyperLogLog> deltas) {
+        Map<LocalDateTime, Set<Integer>> urisByDay = deltas.keySet().stream()
+                .collect(Collectors.groupingBy(BucketKey::bucket, Collectors.mapping(BucketKey::uriId, Collectors.toSet())));
+        // Строки блокируются в порядке ключа, как и при записи агрегатов, чтобы экземпляры не ждали друг друга по кругу
+        sketchRepository.insertMissing(deltas.keySet());
+        Map<BucketKey, HyperLogLog> result = new HashMap<>();
+        new TreeMap<>(urisByDay).forEach((day, dayUris) ->
+                result.putAll(sketchRepository.findByBucketForUpdate(day, dayUris)));
+        deltas.forEach((key, sketch) -> result.merge(key, sketch.copy(), SketchService::union));
+        sketchRepository.saveAll(result);
+    }
+
+    private void mergeInMemory(Map<BucketKey, HyperLogLog> source, LocalDateTime from, LocalDateTime to,
+                               List<Integer> uriIds, Map<StatKey, HyperLogLog> target) {
+        Set<Integer> uriSet = uriIds == null || uriIds.isEmpty() ? null : new HashSet<>(uriIds);
+        for (BucketKey key : source.keySet()) {
+            if (key.bucket().isBefore(from) || !key.bucket().isBefore(to)
+                    || (uriSet != null && !uriSet.contains(key.uriId()))) {
+                continue;
+            }
+            // Копия снимается под блокировкой ключа, чтобы не читать скетч во время записи
+            source.computeIfPresent(key, (k, sketch) -> {
+                target.merge(new StatKey(k.appId(), k.uriId()), sketch.copy(), SketchService::union);
+                return sketch;
+            });
+        }
+    }
+
+    private static HyperLogLog union(HyperLogLog current, HyperLogLog added) {
+        current.merge(added);
+        return current;
+    }
+}
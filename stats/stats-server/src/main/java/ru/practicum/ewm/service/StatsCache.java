@@ -0,0 +1,285 @@
+package ru.practicum.ewm.service;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.ViewStatsDto;
+import ru.practicum.ewm.dictionary.StatDictionary;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.UriFilter;
+import ru.practicum.ewm.model.TimeRange;
+import ru.practicum.ewm.model.UriPattern;
+import ru.practicum.ewm.repository.RollupRepository;
+import ru.practicum.ewm.repository.StatRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Кэш результатов /stats. Границы периода входят в ключ точно, кроме границ за пределами сохранённых хитов:
+// начало не позже первого хита и конец не раньше последнего заменяются открытой границей, результат от них
+// не зависит. Uri и шаблоны сортируются, так что повторяющиеся запросы "за 100 лет до текущего момента"
+// попадают в одну запись.
+// Запись удаляется, как только зафиксированы новые хиты по любому из её uri или по uri, подходящему
+// под её шаблоны (записи без фильтра uri - при любом новом хите); при переполнении вытесняется запись,
+// к которой дольше всего не обращались.
+@Component
+public class StatsCache {
+    @Getter
+    private final boolean enabled;
+    private final boolean aggregatesEnabled;
+    private final int maxEntries;
+    private final StatDictionary statDictionary;
+    private final StatRepository statRepository;
+    private final RollupRepository rollupRepository;
+
+    private final LinkedHashMap<Key, List<ViewStatsDto>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> keysByUri = new HashMap<>();
+    private final Set<Key> unfilteredKeys = new HashSet<>();
+    private final Set<Key> patternKeys = new HashSet<>();
+    // Номер последней инвалидации по каждому uri: результат, посчитанный параллельно с записью хитов,
+    // в кэш не попадает. Порядок обхода - по возрастанию номера; номера не новее самого старого
+    // выполняющегося подсчёта больше не нужны и удаляются
+    private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+    // Номера инвалидации, от которых сейчас идут подсчёты, и число подсчётов с каждым номером
+    private final TreeMap<Long, Integer> running = new TreeMap<>();
+    private long invalidations;
+    private long clearedAt;
+    // Время первого и последнего сохранённого хита; null - хитов ещё нет
+    private LocalDateTime firstHit;
+    private LocalDateTime lastHit;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidatedCounter;
+    private final Counter evictedCounter;
+
+    public StatsCache(StatDictionary statDictionary,
+                      StatRepository statRepository,
+                      RollupRepository rollupRepository,
+                      MeterRegistry meterRegistry,
+                      @Value("${stats.cache.enabled:true}") boolean enabled,
+                      @Value("${stats.aggregates.enabled:true}") boolean aggregatesEnabled,
+                      @Value("${stats.cache.max-entries:10000}") int maxEntries) {
+        this.statDictionary = statDictionary;
+        this.statRepository = statRepository;
+        this.rollupRepository = rollupRepository;
+        this.enabled = enabled;
+        this.aggregatesEnabled = aggregatesEnabled;
+        this.maxEntries = maxEntries;
+
+        Gauge.builder("stats.cache.size", this, StatsCache::size)
+                .description("Количество закэшированных результатов /stats")
+                .register(meterRegistry);
+        this.hitCounter = Counter.builder("stats.cache.requests")
+                .tag("result", "hit")
+                .description("Запросы /stats, обслуженные из кэша")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("stats.cache.requests")
+                .tag("result", "miss")
+                .description("Запросы /stats, посчитанные по БД")
+                .register(meterRegistry);
+        this.invalidatedCounter = Counter.builder("stats.cache.evictions")
+                .tag("cause", "invalidation")
+                .description("Записи, удалённые из-за новых хитов")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("stats.cache.evictions")
+                .tag("cause", "size")
+                .description("Записи, вытесненные при переполнении кэша")
+                .register(meterRegistry);
+    }
+
+    // Сжатые хиты остаются только в суточных агрегатах, поэтому их сутки тоже входят в промежуток
+    @PostConstruct
+    public synchronized void loadHitSpan() {
+        if (!enabled) {
+            return;
+        }
+        TimeRange raw = statRepository.findHitSpan();
+        if (raw.from() != null) {
+            extendHitSpan(raw.from(), raw.to());
+        }
+        if (aggregatesEnabled) {
+            rollupRepository.findDaySpan().ifPresent(days -> extendHitSpan(days.from(),
+                    days.to().plusDays(1).minus(1, ChronoUnit.MICROS)));
+        }
+    }
+
+    // Вызывать после snapshot: хит, зафиксированный позже, не даст сохранить запись с открытой границей
+    public synchronized Key key(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                                boolean approximate) {
+        List<String> uris = uriFilter.uris().stream()
+                .distinct()
+                .sorted()
+                .toList();
+        List<UriPattern> patterns = uriFilter.patterns().stream()
+                .distinct()
+                .sorted(Comparator.comparing(UriPattern::getSource))
+                .toList();
+        // null - открытая граница
+        LocalDateTime keyStart = firstHit == null || !start.isAfter(firstHit) ? null : start;
+        LocalDateTime keyEnd = lastHit == null || !end.isBefore(lastHit) ? null : end;
+        return new Key(keyStart, keyEnd, uris, patterns, unique, approximate);
+    }
+
+    public synchronized List<ViewStatsDto> get(Key key) {
+        List<ViewStatsDto> statistics = entries.get(key);
+        if (statistics == null) {
+            missCounter.increment();
+        } else {
+            hitCounter.increment();
+        }
+        return statistics;
+    }
+
+    // Номер инвалидации на момент начала подсчёта, передаётся в put. После подсчёта,
+    // в том числе неудачного, номер возвращается через release
+    public synchronized long snapshot() {
+        running.merge(invalidations, 1, Integer::sum);
+        return invalidations;
+    }
+
+    public synchronized void release(long snapshot) {
+        if (running.merge(snapshot, -1, Integer::sum) == 0) {
+            running.remove(snapshot);
+        }
+        long oldest = running.isEmpty() ? invalidations : running.firstKey();
+        Iterator<Long> stamps = invalidatedAt.values().iterator();
+        while (stamps.hasNext() && stamps.next() <= oldest) {
+            stamps.remove();
+        }
+    }
+
+    public synchronized void put(Key key, List<ViewStatsDto> statistics, long snapshot) {
+        if (isInvalidatedSince(key, snapshot)) {
+            return;
+        }
+        entries.put(key, List.copyOf(statistics));
+        if (key.isUnfiltered()) {
+            unfilteredKeys.add(key);
+        }
+        if (!key.patterns().isEmpty()) {
+            patternKeys.add(key);
+        }
+        key.uris().forEach(uri -> keysByUri.computeIfAbsent(uri, u -> new HashSet<>()).add(key));
+        if (entries.size() > maxEntries) {
+            Key eldest = entries.keySet().iterator().next();
+            remove(eldest);
+            evictedCounter.increment();
+        }
+    }
+
+    // Инвалидация выполняется после фиксации транзакции записи, иначе параллельный запрос
+    // успел бы закэшировать результат без новых хитов
+    public void invalidateAfterCommit(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> uris = hits.stream()
+                .map(EndpointHit::getUriId)
+                .distinct()
+                .map(statDictionary::uri)
+                .collect(Collectors.toSet());
+        LocalDateTime first = hits.stream().map(EndpointHit::getTimestamp).min(LocalDateTime::compareTo).orElseThrow();
+        LocalDateTime last = hits.stream().map(EndpointHit::getTimestamp).max(LocalDateTime::compareTo).orElseThrow();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(uris, first, last);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(uris, first, last);
+            }
+        });
+    }
+
+    // Сброс всех записей, например после сдвига границы сжатия старых хитов
+    public synchronized void invalidateAll() {
+        clearedAt = ++invalidations;
+        int removed = entries.size();
+        entries.clear();
+        keysByUri.clear();
+        unfilteredKeys.clear();
+        patternKeys.clear();
+        invalidatedCounter.increment(removed);
+    }
+
+    private synchronized void invalidate(Set<String> uris, LocalDateTime first, LocalDateTime last) {
+        long invalidation = ++invalidations;
+        extendHitSpan(first, last);
+        int removed = 0;
+        for (String uri : uris) {
+            // Удаление перед вставкой переносит uri в конец порядка обхода
+            invalidatedAt.remove(uri);
+            invalidatedAt.put(uri, invalidation);
+            Set<Key> keys = keysByUri.get(uri);
+            if (keys != null) {
+                for (Key key : List.copyOf(keys)) {
+                    removed += remove(key);
+                }
+            }
+        }
+        for (Key key : List.copyOf(unfilteredKeys)) {
+            removed += remove(key);
+        }
+        for (Key key : List.copyOf(patternKeys)) {
+            if (uris.stream().anyMatch(uri -> key.patterns().stream().anyMatch(pattern -> pattern.matches(uri)))) {
+                removed += remove(key);
+            }
+        }
+        invalidatedCounter.increment(removed);
+    }
+
+    private boolean isInvalidatedSince(Key key, long snapshot) {
+        // Для шаблонов новые подходящие uri заранее неизвестны, поэтому учитывается любая инвалидация
+        if (clearedAt > snapshot || key.isUnfiltered() || !key.patterns().isEmpty()) {
+            return invalidations > snapshot;
+        }
+        return key.uris().stream()
+                .anyMatch(uri -> invalidatedAt.getOrDefault(uri, 0L) > snapshot);
+    }
+
+    private int remove(Key key) {
+        if (entries.remove(key) == null) {
+            return 0;
+        }
+        unfilteredKeys.remove(key);
+        patternKeys.remove(key);
+        for (String uri : key.uris()) {
+            Set<Key> keys = keysByUri.get(uri);
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                keysByUri.remove(uri);
+            }
+        }
+        return 1;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private void extendHitSpan(LocalDateTime first, LocalDateTime last) {
+        if (firstHit == null || first.isBefore(firstHit)) {
+            firstHit = first;
+        }
+        if (lastHit == null || last.isAfter(lastHit)) {
+            lastHit = last;
+        }
+    }
+
+    public record Key(LocalDateTime start, LocalDateTime end, List<String> uris, List<UriPattern> patterns,
+                      boolean unique, boolean approximate) {
+        boolean isUnfiltered() {
+            return uris.isEmpty() && patterns.isEmpty();
+        }
+    }
+}
@@ -1,13 +1,38 @@
 package ru.practicum.ewm.service;
 
 import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.LiveStatsDto;
+import ru.practicum.ewm.TimeSeriesBucket;
+import ru.practicum.ewm.TimeSeriesDto;
 import ru.practicum.ewm.ViewStatsDto;
+import ru.practicum.ewm.model.StatsCoverage;
+import ru.practicum.ewm.model.UriFilter;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void addHit(EndpointHitDto hitDto);
 
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    void addHits(List<EndpointHitDto> hitDtos);
+
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                                Boolean approximate);
+
+    // Строки статистики передаются в consumer по одной, без сборки всего ответа в памяти
+    void streamStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                     Boolean approximate, Consumer<ViewStatsDto> consumer);
+
+    // Фактические границы и точность ответа /stats с теми же параметрами
+    StatsCoverage getCoverage(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                              Boolean approximate);
+
+    TimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, TimeSeriesBucket bucket,
+                                boolean unique);
+
+    List<ViewStatsDto> getTop(LocalDateTime start, LocalDateTime end, int k, String prefix);
+
+    // Просмотры за последнюю минуту, 15 минут и час из счётчиков в памяти, самые посещаемые uri первыми
+    List<LiveStatsDto> getLive(UriFilter uriFilter, int limit);
 }
@@ -2,17 +2,44 @@ package ru.practicum.ewm.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.EndpointHitDto;
+import ru.practicum.ewm.LiveStatsDto;
+import ru.practicum.ewm.TimeSeriesBucket;
+import ru.practicum.ewm.TimeSeriesDto;
+import ru.practicum.ewm.ViewSeriesDto;
 import ru.practicum.ewm.ViewStatsDto;
+import ru.practicum.ewm.dictionary.StatDictionary;
 import ru.practicum.ewm.exception.ValidationException;
+import ru.practicum.ewm.model.BucketCount;
 import ru.practicum.ewm.model.EndpointHit;
 import ru.practicum.ewm.model.EndpointHitMapper;
+import ru.practicum.ewm.model.LiveCount;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.model.StatKey;
+import ru.practicum.ewm.model.StatsCoverage;
+import ru.practicum.ewm.model.TimeBucket;
+import ru.practicum.ewm.model.UriFilter;
+import ru.practicum.ewm.repository.RollupRepository;
 import ru.practicum.ewm.repository.StatRepository;
+import ru.practicum.ewm.repository.VisitorRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -21,17 +48,248 @@ import java.util.List;
 public class StatsServiceImpl implements StatsService {
     private final StatRepository statRepository;
     private final EndpointHitMapper endpointHitMapper;
+    private final HitBuffer hitBuffer;
+    private final IngestAdmission ingestAdmission;
+    private final RollupRepository rollupRepository;
+    private final VisitorRepository visitorRepository;
+    private final SketchService sketchService;
+    private final StatDictionary statDictionary;
+    private final TopService topService;
+    private final LiveStatsService liveStatsService;
+    private final StatsCache statsCache;
+    private final CompactionService compactionService;
+    private final ParallelStatsExecutor parallelStatsExecutor;
 
+    @Value("${stats.aggregates.enabled:true}")
+    private boolean aggregatesEnabled;
+
+    @Value("${stats.rollups.enabled:true}")
+    private boolean rollupsEnabled;
+
+    @Value("${stats.unique.approximate-default:false}")
+    private boolean approximateByDefault;
+
+    @Value("${stats.unique.visitor-index.enabled:true}")
+    private boolean visitorIndexEnabled;
+
+    @Value("${stats.timeseries.max-points:10000}")
+    private int maxSeriesPoints;
+
+    @Value("${stats.ingest.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    // Транзакцию открывает HitWriter уже после допуска, чтобы отклонённый запрос не занимал соединение с БД
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void addHit(EndpointHitDto hitDto) {
         EndpointHit hit = endpointHitMapper.toHit(hitDto);
-        statRepository.save(hit);
+        // В буферизованном режиме запись выполнит фоновый поток
+        if (hitBuffer.isEnabled()) {
+            ingestAdmission.offer(hit);
+            return;
+        }
+        ingestAdmission.write(List.of(hit));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void addHits(List<EndpointHitDto> hitDtos) {
+        // Пакет пишется одной транзакцией и держит соединение с БД: слишком большой отклоняется целиком
+        if (hitDtos.size() > maxBatchSize) {
+            throw new ValidationException("В пакете " + hitDtos.size() + " хитов, допускается не больше " +
+                    maxBatchSize);
+        }
+        List<EndpointHit> hits = hitDtos.stream()
+                .map(endpointHitMapper::toHit)
+                .toList();
+        ingestAdmission.write(hits);
+        log.info("Сохранено {} хитов одним пакетом", hits.size());
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                                       Boolean approximate) {
+        if (!statsCache.isEnabled()) {
+            List<ViewStatsDto> statistics = new ArrayList<>();
+            streamStats(start, end, uriFilter, unique, approximate, statistics::add);
+            return statistics;
+        }
+
+        validateRange(start, end);
+        boolean approximateUnique = unique && Objects.requireNonNullElse(approximate, approximateByDefault);
+        long snapshot = statsCache.snapshot();
+        try {
+            StatsCache.Key key = statsCache.key(start, end, uriFilter, unique, approximateUnique);
+            List<ViewStatsDto> cached = statsCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            List<ViewStatsDto> statistics = new ArrayList<>();
+            streamStats(start, end, uriFilter, unique, approximateUnique, statistics::add);
+            statsCache.put(key, statistics, snapshot);
+            return statistics;
+        } finally {
+            statsCache.release(snapshot);
+        }
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                            Boolean approximate, Consumer<ViewStatsDto> consumer) {
+
+        validateRange(start, end);
+
+        // Хранилище работает с кодами словаря; uri, которых нет в словаре, ещё не посещались.
+        // Префиксы и glob-шаблоны раскрываются в коды по префиксному дереву до агрегации
+        List<Integer> uriIds = null;
+        if (!uriFilter.isEmpty()) {
+            uriIds = statDictionary.findUriIds(uriFilter);
+            if (uriIds.isEmpty()) {
+                return;
+            }
+        }
+
+        Plan plan = plan(start, end, uriIds, unique, approximate);
+        // Коды раскодируются в строки только при формировании ответа
+        Consumer<StatCount> decoder = count -> consumer.accept(statDictionary.decode(count));
+        if (plan.visitorIndex()) {
+            countUniqueVisitors(plan.start(), plan.end(), uriIds, decoder);
+            return;
+        }
+        countStats(plan.start(), plan.end(), uriIds, unique, approximate, plan.compacted(), decoder);
+    }
+
+    @Override
+    public StatsCoverage getCoverage(LocalDateTime start, LocalDateTime end, UriFilter uriFilter, boolean unique,
+                                     Boolean approximate) {
+        validateRange(start, end);
+        List<Integer> uriIds = null;
+        if (!uriFilter.isEmpty()) {
+            uriIds = statDictionary.findUriIds(uriFilter);
+            if (uriIds.isEmpty()) {
+                return new StatsCoverage(start, end, false);
+            }
+        }
+        Plan plan = plan(start, end, uriIds, unique, approximate);
+        boolean approximateUnique = unique && aggregatesEnabled && !plan.visitorIndex()
+                && (plan.compacted() || Objects.requireNonNullElse(approximate, approximateByDefault));
+        return new StatsCoverage(plan.start(), plan.end(), approximateUnique);
     }
 
     @Override
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    public TimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, UriFilter uriFilter,
+                                       TimeSeriesBucket bucket, boolean unique) {
+        validateRange(start, end);
+        // Интервалы выровнены по началу эпохи, первый содержит start
+        long seconds = bucket.getSeconds();
+        long startEpoch = start.toEpochSecond(ZoneOffset.UTC);
+        LocalDateTime origin = LocalDateTime.ofEpochSecond(Math.floorDiv(startEpoch, seconds) * seconds, 0,
+                ZoneOffset.UTC);
+        long points = Duration.between(origin, end).toSeconds() / seconds + 1;
+        if (points > maxSeriesPoints) {
+            throw new ValidationException("Ряд из " + points + " интервалов превышает допустимые " + maxSeriesPoints +
+                    ", увеличьте шаг или сократите период");
+        }
+        TimeSeriesDto timeSeries = new TimeSeriesDto(origin, bucket, new ArrayList<>());
+
+        List<Integer> uriIds = null;
+        if (!uriFilter.isEmpty()) {
+            uriIds = statDictionary.findUriIds(uriFilter);
+            if (uriIds.isEmpty()) {
+                return timeSeries;
+            }
+        }
+
+        // В сжатом периоде остались только суточные счётчики
+        LocalDateTime horizon = compactionService.getHorizon();
+        if (horizon != null && start.isBefore(horizon) && (unique || bucket != TimeSeriesBucket.DAY)) {
+            throw new ValidationException("До " + horizon + " доступны только ряды неуникальных просмотров по суткам");
+        }
+
+        Map<StatKey, long[]> series = new HashMap<>();
+        Consumer<BucketCount> consumer = count -> {
+            long index = Duration.between(origin, count.bucket()).toSeconds() / seconds;
+            series.computeIfAbsent(new StatKey(count.appId(), count.uriId()), key -> new long[(int) points])
+                    [(int) index] += count.hits();
+        };
+        // Неуникальные просмотры собираются из предагрегатов, иначе - одним сгруппированным проходом по хитам
+        if (!unique && aggregatesEnabled) {
+            rollupRepository.streamBuckets(start, end, uriIds, coarsestRollup(bucket), consumer);
+        } else {
+            statRepository.streamSeries(start, end, uriIds, unique, origin, seconds, consumer);
+        }
+
+        series.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<StatKey, long[]> entry) -> sum(entry.getValue()))
+                        .reversed())
+                .map(entry -> new ViewSeriesDto(statDictionary.app(entry.getKey().appId()),
+                        statDictionary.uri(entry.getKey().uriId()), entry.getValue()))
+                .forEach(timeSeries.getSeries()::add);
+        return timeSeries;
+    }
+
+    @Override
+    public List<ViewStatsDto> getTop(LocalDateTime start, LocalDateTime end, int k, String prefix) {
+        validateRange(start, end);
+        if (k < 1) {
+            throw new ValidationException("Размер выборки k должен быть положительным");
+        }
 
+        IntPredicate uriFilter = prefix == null ? null : uriId -> statDictionary.uri(uriId).startsWith(prefix);
+        List<StatCount> top = topService.getTop(start, end, k, uriFilter);
+        if (top != null) {
+            return top.stream()
+                    .map(statDictionary::decode)
+                    .toList();
+        }
+
+        // Диапазон не покрыт окнами в памяти: точный подсчёт, из которого сохраняются только первые k строк
+        log.debug("Диапазон {} - {} вне окон в памяти, топ считается по БД", start, end);
+        List<ViewStatsDto> result = new ArrayList<>(k);
+        streamStats(start, end, UriFilter.ALL, false, null, viewStats -> {
+            if (result.size() < k && (prefix == null || viewStats.getUri().startsWith(prefix))) {
+                result.add(viewStats);
+            }
+        });
+        return result;
+    }
+
+    // Отвечает только из памяти, соединение с БД не нужно
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<LiveStatsDto> getLive(UriFilter uriFilter, int limit) {
+        if (limit < 1) {
+            throw new ValidationException("Размер выборки limit должен быть положительным");
+        }
+        List<Integer> uriIds = uriFilter.isEmpty() ? null : statDictionary.findUriIds(uriFilter);
+        return liveStatsService.getLive(uriIds).stream()
+                .filter(count -> count.lastHour() > 0)
+                .sorted(Comparator.comparingLong(LiveCount::lastHour).reversed()
+                        .thenComparing(Comparator.comparingLong(LiveCount::lastMinute).reversed()))
+                .limit(limit)
+                .map(count -> new LiveStatsDto(statDictionary.uri(count.uriId()), count.lastMinute(),
+                        count.last15Minutes(), count.lastHour()))
+                .toList();
+    }
+
+    // Самые крупные предагрегаты, строки которых не пересекают границы интервалов ряда
+    private TimeBucket coarsestRollup(TimeSeriesBucket bucket) {
+        return switch (bucket) {
+            case FIVE_MINUTES -> TimeBucket.MINUTE;
+            case HOUR -> TimeBucket.HOUR;
+            case DAY -> TimeBucket.DAY;
+        };
+    }
+
+    private long sum(long[] values) {
+        long total = 0;
+        for (long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    private void validateRange(LocalDateTime start, LocalDateTime end) {
         // Требование тестов Гитхаб
         if (start == null || end == null) {
             throw new ValidationException("Дата старта и окончания должны быть указаны");
@@ -40,14 +298,98 @@ public class StatsServiceImpl implements StatsService {
         if (end.isBefore(start)) {
             throw new ValidationException("Дата окончания не может быть позже даты начала выборки");
         }
+    }
 
-        List<ViewStatsDto> statistics;
+    // Сырые хиты раньше границы сжатия удалены, там остались только суточные агрегаты, скетчи и индекс посетителей.
+    // Индекс не сжимается и отвечает на точный запрос уникальных без округления, пока не нужна проверка сырых хитов:
+    // она нужна посетителю, визиты которого начались до start и закончились после end. Иначе края диапазона,
+    // попавшие в сжатый период, расширяются до целых суток, а уникальные посетители оцениваются по скетчам
+    private Plan plan(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                      Boolean approximate) {
+        LocalDateTime horizon = compactionService.getHorizon();
+        if (horizon == null || !start.isBefore(horizon)) {
+            return new Plan(start, end, false, false);
+        }
+        if (unique && !Objects.requireNonNullElse(approximate, approximateByDefault) && visitorIndexEnabled
+                && !visitorRepository.hasVisitsSpanning(start, end, uriIds)) {
+            return new Plan(start, end, true, true);
+        }
+        LocalDateTime to = end.isBefore(horizon) ? TimeBucket.DAY.floor(end).plusDays(1).minus(1, ChronoUnit.MICROS)
+                : end;
+        return new Plan(TimeBucket.DAY.floor(start), to, true, false);
+    }
 
-        if (uris != null && !uris.isEmpty()) {
+    private void countStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                            Boolean approximate, boolean compacted, Consumer<StatCount> consumer) {
+        // Сжатый период есть только в агрегатах: хиты по суткам и приближённые уникальные посетители по скетчам
+        if (compacted) {
             if (unique) {
-                statistics = statRepository.getUniqueStatsWithUris(start, end, uris);
+                sketchService.getUniqueStats(start, end, uriIds).forEach(consumer);
             } else {
-                statistics = statRepository.getStatsWithUris(start, end, uris);
+                streamRollups(start, end, uriIds, consumer);
+            }
+            return;
+        }
+
+        if (!aggregatesEnabled) {
+            countRaw(start, end, uriIds, unique, consumer);
+            return;
+        }
+
+        // Неуникальные просмотры считаются по предагрегированным интервалам
+        if (!unique && rollupsEnabled) {
+            streamRollups(start, end, uriIds, consumer);
+            return;
+        }
+
+        // Приближённые уникальные просмотры по скетчам HyperLogLog, стандартная ошибка 1.6-2.3%.
+        // Скетчи сливаются в памяти, поэтому результат собирается целиком
+        if (unique && Objects.requireNonNullElse(approximate, approximateByDefault)) {
+            sketchService.getUniqueStats(start, end, uriIds).forEach(consumer);
+            return;
+        }
+
+        // Точные уникальные просмотры по индексу посетителей вместо COUNT(DISTINCT ip) по всем хитам
+        if (unique && visitorIndexEnabled) {
+            countUniqueVisitors(start, end, uriIds, consumer);
+            return;
+        }
+
+        countRaw(start, end, uriIds, unique, consumer);
+    }
+
+    private void countUniqueVisitors(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                     Consumer<StatCount> consumer) {
+        if (parallelStatsExecutor.shouldSplitByUri(start, end, uriIds)) {
+            parallelStatsExecutor.splitByUri((shard, shards, part) ->
+                    visitorRepository.streamUniqueStats(start, end, uriIds, shard, shards, part))
+                    .forEach(consumer);
+        } else {
+            visitorRepository.streamUniqueStats(start, end, uriIds, consumer);
+        }
+    }
+
+    // Широкий диапазон считается по частям параллельно; результат частей собирается целиком для сложения
+    private void streamRollups(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                               Consumer<StatCount> consumer) {
+        if (parallelStatsExecutor.shouldSplit(start, end, uriIds)) {
+            parallelStatsExecutor.splitByTime(start, end, (from, to, part) ->
+                    rollupRepository.streamStats(from, to, uriIds, part))
+                    .forEach(consumer);
+        } else {
+            rollupRepository.streamStats(start, end, uriIds, consumer);
+        }
+    }
+
+    private void countRaw(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                          Consumer<StatCount> consumer) {
+        Stream<StatCount> statistics;
+
+        if (uriIds != null) {
+            if (unique) {
+                statistics = statRepository.getUniqueStatsWithUris(start, end, uriIds);
+            } else {
+                statistics = statRepository.getStatsWithUris(start, end, uriIds);
             }
         } else {
             if (unique) {
@@ -56,6 +398,11 @@ public class StatsServiceImpl implements StatsService {
                 statistics = statRepository.getStats(start, end);
             }
         }
-        return statistics;
+        try (statistics) {
+            statistics.forEach(consumer);
+        }
+    }
+
+    private record Plan(LocalDateTime start, LocalDateTime end, boolean compacted, boolean visitorIndex) {
     }
 }
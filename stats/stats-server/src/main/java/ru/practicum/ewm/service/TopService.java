@@ -0,0 +1,160 @@
+package ru.practicum.ewm.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.ewm.model.EndpointHit;
+import ru.practicum.ewm.model.StatCount;
+import ru.practicum.ewm.sketch.CountMinSketch;
+import ru.practicum.ewm.sketch.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+// Самые посещаемые (app, uri) за последние сутки без обращения к БД.
+// Хиты раскладываются по окнам фиксированной длины в кольцевом буфере; у каждого окна своя сводка
+// Space-Saving и скетч Count-Min. Окно переиспользуется, как только приходит хит на windows окон позже.
+@Service
+public class TopService {
+    private final long windowMinutes;
+    private final Window[] windows;
+    // Первое окно, целиком прошедшее через сервис: более ранние хиты есть только в БД
+    private final long coveredFrom;
+
+    public TopService(@Value("${stats.top.window-minutes:5}") long windowMinutes,
+                      @Value("${stats.top.windows:288}") int windowCount,
+                      @Value("${stats.top.capacity:512}") int capacity,
+                      @Value("${stats.top.count-min-width:1024}") int countMinWidth) {
+        this.windowMinutes = windowMinutes;
+        this.windows = new Window[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            windows[i] = new Window(capacity, countMinWidth);
+        }
+        this.coveredFrom = windowIndex(LocalDateTime.now()) + 1;
+    }
+
+    public void addHits(List<EndpointHit> hits) {
+        for (EndpointHit hit : hits) {
+            long index = windowIndex(hit.getTimestamp());
+            if (index >= coveredFrom) {
+                slot(index).offer(index, key(hit.getAppId(), hit.getUriId()));
+            }
+        }
+    }
+
+    // Первые k строк за [start, end] или null, если часть диапазона в памяти уже не хранится
+    // и ответ нужно получать из БД. Крайние окна учитываются пропорционально их пересечению с диапазоном.
+    public List<StatCount> getTop(LocalDateTime start, LocalDateTime end, int k, IntPredicate uriFilter) {
+        long first = windowIndex(start);
+        long last = windowIndex(end);
+        if (first < coveredFrom || last - first >= windows.length) {
+            return null;
+        }
+
+        // Сначала суммируются только счётчики сводок, в которых ключ присутствует
+        Map<Long, Double> tracked = new HashMap<>();
+        for (long index = first; index <= last; index++) {
+            if (!slot(index).collect(index, weight(index, start, end), uriFilter, tracked)) {
+                return null;
+            }
+        }
+
+        // Для лучших кандидатов добавляются оценки из окон, где ключ был вытеснен из сводки:
+        // Count-Min ограничивает сверху точнее, чем минимальный счётчик Space-Saving
+        List<Long> candidates = tracked.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(Math.max(4L * k, 100))
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<Long, Double> estimates = new HashMap<>();
+        for (Long key : candidates) {
+            estimates.put(key, 0.0);
+        }
+        for (long index = first; index <= last; index++) {
+            slot(index).estimate(index, weight(index, start, end), estimates);
+        }
+
+        return estimates.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(k)
+                .map(e -> new StatCount((int) (e.getKey() >>> 32), (int) (long) e.getKey(), Math.round(e.getValue())))
+                .toList();
+    }
+
+    // Доля окна, попадающая в [start, end]; внутри окна хиты считаются распределёнными равномерно
+    private double weight(long index, LocalDateTime start, LocalDateTime end) {
+        long windowSeconds = windowMinutes * 60;
+        long windowStart = index * windowSeconds;
+        long from = Math.max(windowStart, start.toEpochSecond(ZoneOffset.UTC));
+        // BETWEEN включает правую границу
+        long to = Math.min(windowStart + windowSeconds, end.toEpochSecond(ZoneOffset.UTC) + 1);
+        return (double) (to - from) / windowSeconds;
+    }
+
+    private Window slot(long index) {
+        return windows[(int) Math.floorMod(index, windows.length)];
+    }
+
+    private long windowIndex(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), windowMinutes * 60);
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << 32) | (uriId & 0xffffffffL);
+    }
+
+    private static class Window {
+        private final SpaceSaving summary;
+        private final CountMinSketch sketch;
+        private long index = Long.MIN_VALUE;
+
+        Window(int capacity, int countMinWidth) {
+            this.summary = new SpaceSaving(capacity);
+            this.sketch = new CountMinSketch(countMinWidth);
+        }
+
+        synchronized void offer(long hitIndex, long key) {
+            if (hitIndex < index) {
+                // Окно уже занято более поздним интервалом, хит старше хранимых суток
+                return;
+            }
+            if (hitIndex > index) {
+                summary.clear();
+                sketch.clear();
+                index = hitIndex;
+            }
+            summary.offer(key);
+            sketch.add(key);
+        }
+
+        // false, если окно уже занято более поздним интервалом
+        synchronized boolean collect(long expected, double weight, IntPredicate uriFilter, Map<Long, Double> target) {
+            if (index > expected) {
+                return false;
+            }
+            if (index == expected) {
+                summary.forEach((key, count) -> {
+                    if (uriFilter == null || uriFilter.test((int) key)) {
+                        target.merge(key, count * weight, Double::sum);
+                    }
+                });
+            }
+            return true;
+        }
+
+        synchronized void estimate(long expected, double weight, Map<Long, Double> target) {
+            // Хитов за интервал не было, если окно не дошло до него
+            if (index != expected) {
+                return;
+            }
+            for (Map.Entry<Long, Double> entry : target.entrySet()) {
+                long count = summary.count(entry.getKey());
+                if (count < 0) {
+                    count = Math.min(sketch.estimate(entry.getKey()), summary.missingBound());
+                }
+                entry.setValue(entry.getValue() + count * weight);
+            }
+        }
+    }
+}
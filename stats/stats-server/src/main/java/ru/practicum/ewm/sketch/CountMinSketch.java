@@ -0,0 +1,46 @@
+package ru.practicum.ewm.sketch;
+
+import java.util.Arrays;
+
+// Скетч Count-Min: оценка частоты произвольного ключа сверху.
+// При ширине w оценка превышает истинную частоту не более чем на e * total / w с вероятностью 1 - e^-depth.
+// Класс не потокобезопасен.
+public class CountMinSketch {
+    private static final long[] SEEDS = {
+            0x9e3779b97f4a7c15L, 0xbf58476d1ce4e5b9L, 0x94d049bb133111ebL, 0x2545f4914f6cdd1dL
+    };
+
+    private final int mask;
+    private final int[][] rows;
+
+    // Ширина округляется вверх до степени двойки
+    public CountMinSketch(int width) {
+        int size = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.rows = new int[SEEDS.length][size];
+    }
+
+    public void add(long key) {
+        for (int row = 0; row < rows.length; row++) {
+            rows[row][index(key, row)]++;
+        }
+    }
+
+    public long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < rows.length; row++) {
+            estimate = Math.min(estimate, rows[row][index(key, row)]);
+        }
+        return estimate;
+    }
+
+    public void clear() {
+        for (int[] row : rows) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    private int index(long key, int row) {
+        return (int) (Hashing.mix(key ^ SEEDS[row]) & mask);
+    }
+}
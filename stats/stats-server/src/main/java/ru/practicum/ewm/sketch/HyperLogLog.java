@@ -0,0 +1,211 @@
+package ru.practicum.ewm.sketch;
+
+import java.util.Arrays;
+
+// Скетч HyperLogLog для оценки числа уникальных значений.
+// 2^12 регистров по байту: до 4 КБ на скетч, стандартная ошибка 1.04 / sqrt(4096) ≈ 1.6%
+// (до ~2.3% в переходной зоне 8-16 тыс. уникальных значений), т.е. примерно в 95% случаев
+// оценка отличается от точного значения не более чем на 3.5-4.5%.
+// Объединение скетчей идемпотентно, поэтому один и тот же скетч можно слить несколько раз.
+// Пока ненулевых регистров не больше SPARSE_LIMIT, скетч хранит только их: большинство пар (app, uri)
+// за сутки набирают десятки посетителей, и плотный массив для них почти пуст. Регистры те же,
+// поэтому оценка не зависит от представления
+public class HyperLogLog {
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final double LINEAR_COUNTING_THRESHOLD = 3.0 * REGISTERS;
+    // В разреженной форме регистр занимает 3 байта (номер и ранг); дальше плотная форма выгоднее
+    private static final int SPARSE_LIMIT = REGISTERS / 4;
+    private static final int SPARSE_ENTRY_BYTES = 3;
+
+    // Плотная форма; null, пока скетч разреженный
+    private byte[] registers;
+    // Разреженная форма: ненулевые регистры (номер << 8 | ранг) по возрастанию номера
+    private int[] sparse;
+    private int sparseSize;
+
+    public HyperLogLog() {
+        this.sparse = new int[8];
+    }
+
+    private HyperLogLog(byte[] registers, int[] sparse, int sparseSize) {
+        this.registers = registers;
+        this.sparse = sparse;
+        this.sparseSize = sparseSize;
+    }
+
+    // Плотная форма - ровно REGISTERS байт, разреженная - по 3 байта на регистр. REGISTERS не делится на 3,
+    // поэтому формы различаются по длине, а сохранённые ранее плотные скетчи читаются как прежде
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length == REGISTERS) {
+            return new HyperLogLog(bytes.clone(), null, 0);
+        }
+        if (bytes.length % SPARSE_ENTRY_BYTES != 0 || bytes.length / SPARSE_ENTRY_BYTES > SPARSE_LIMIT) {
+            throw new IllegalArgumentException("Некорректный размер скетча: " + bytes.length);
+        }
+        int size = bytes.length / SPARSE_ENTRY_BYTES;
+        int[] entries = new int[Math.max(size, 8)];
+        int previous = -1;
+        for (int i = 0; i < size; i++) {
+            int offset = i * SPARSE_ENTRY_BYTES;
+            int index = (bytes[offset] & 0xFF) << 8 | bytes[offset + 1] & 0xFF;
+            int rank = bytes[offset + 2];
+            if (index <= previous || index >= REGISTERS || rank <= 0) {
+                throw new IllegalArgumentException("Некорректный регистр скетча: " + index);
+            }
+            entries[i] = index << 8 | rank;
+            previous = index;
+        }
+        return new HyperLogLog(null, entries, size);
+    }
+
+    public byte[] toBytes() {
+        if (registers != null) {
+            return registers.clone();
+        }
+        byte[] bytes = new byte[sparseSize * SPARSE_ENTRY_BYTES];
+        for (int i = 0; i < sparseSize; i++) {
+            int offset = i * SPARSE_ENTRY_BYTES;
+            int index = sparse[i] >>> 8;
+            bytes[offset] = (byte) (index >>> 8);
+            bytes[offset + 1] = (byte) index;
+            bytes[offset + 2] = (byte) sparse[i];
+        }
+        return bytes;
+    }
+
+    public HyperLogLog copy() {
+        return registers != null
+                ? new HyperLogLog(registers.clone(), null, 0)
+                : new HyperLogLog(null, sparse.clone(), sparseSize);
+    }
+
+    public void offer(byte[] value) {
+        long hash = Hashing.hash64(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Сторожевой бит ограничивает ранг, если оставшиеся биты нулевые
+        long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = rank;
+            }
+            return;
+        }
+        offerSparse(index, rank);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (registers == null && other.registers == null) {
+            mergeSparse(other);
+            return;
+        }
+        densify();
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                int index = other.sparse[i] >>> 8;
+                byte rank = (byte) other.sparse[i];
+                if (registers[index] < rank) {
+                    registers[index] = rank;
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = REGISTERS - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (byte) sparse[i]);
+            }
+        }
+        // На малых мощностях точнее линейный подсчёт по пустым регистрам: сырая оценка HLL
+        // до ~3m заметно завышена, поэтому порог сравнивается с результатом линейного подсчёта
+        if (zeros > 0) {
+            double linear = REGISTERS * Math.log((double) REGISTERS / zeros);
+            if (linear <= LINEAR_COUNTING_THRESHOLD) {
+                return Math.round(linear);
+            }
+        }
+        return Math.round(ALPHA * REGISTERS * REGISTERS / sum);
+    }
+
+    private void offerSparse(int index, byte rank) {
+        int position = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position < sparseSize && sparse[position] >>> 8 == index) {
+            if ((byte) sparse[position] < rank) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize == SPARSE_LIMIT) {
+            densify();
+            registers[index] = rank;
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, SPARSE_LIMIT));
+        }
+        System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+        sparse[position] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    // Слияние двух упорядоченных списков регистров с максимумом рангов на совпадающих номерах
+    private void mergeSparse(HyperLogLog other) {
+        int[] merged = new int[sparseSize + other.sparseSize];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < sparseSize || j < other.sparseSize) {
+            int left = i < sparseSize ? sparse[i] >>> 8 : Integer.MAX_VALUE;
+            int right = j < other.sparseSize ? other.sparse[j] >>> 8 : Integer.MAX_VALUE;
+            if (left < right) {
+                merged[size++] = sparse[i++];
+            } else if (right < left) {
+                merged[size++] = other.sparse[j++];
+            } else {
+                merged[size++] = (byte) sparse[i] >= (byte) other.sparse[j] ? sparse[i] : other.sparse[j];
+                i++;
+                j++;
+            }
+        }
+        sparse = merged.length == 0 ? new int[8] : merged;
+        sparseSize = size;
+        if (sparseSize > SPARSE_LIMIT) {
+            densify();
+        }
+    }
+
+    private void densify() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[REGISTERS];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.ewm.sketch;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Счётчик событий за последнюю минуту и последний час без блокировок.
+// Два кольца: 60 секундных ячеек и 60 минутных. Ячейка хранит в одном long номер своего интервала
+// (старшие TAG_BITS бит) и число событий в нём: переход ячейки на новый интервал и прибавление
+// выполняются одним CAS, поэтому события на границе интервалов не теряются.
+// Каждое кольцо разбито на stripes полос, поток пишет в случайную полосу, чтение складывает все полосы.
+// Чтение обходит не больше 60 ячеек в каждой полосе и не зависит от числа событий.
+// Потокобезопасен.
+public class SlidingWindowCounter {
+    public static final int SLOTS = 60;
+
+    private static final int TAG_BITS = 24;
+    private static final int COUNT_BITS = Long.SIZE - TAG_BITS;
+    private static final long TAG_MASK = (1L << TAG_BITS) - 1;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final int stripeMask;
+    private final AtomicLongArray seconds;
+    private final AtomicLongArray minutes;
+
+    // Число полос округляется вверх до степени двойки
+    public SlidingWindowCounter(int stripes) {
+        int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1;
+        this.stripeMask = size - 1;
+        this.seconds = new AtomicLongArray(size * SLOTS);
+        this.minutes = new AtomicLongArray(size * SLOTS);
+    }
+
+    // Событие в секунду epochSecond; события старше часа относительно уже записанных не учитываются
+    public void add(long epochSecond) {
+        int stripe = ThreadLocalRandom.current().nextInt() & stripeMask;
+        increment(seconds, stripe, epochSecond);
+        increment(minutes, stripe, Math.floorDiv(epochSecond, SLOTS));
+    }
+
+    // События за последние window секунд до nowSecond включительно: до минуты - по секундным ячейкам,
+    // дольше - по минутным, вместе с текущей неполной минутой (окно 15 минут охватывает от 14 до 15 минут)
+    public long count(long nowSecond, int window) {
+        if (window <= SLOTS) {
+            return sum(seconds, nowSecond, window);
+        }
+        int windowMinutes = Math.min((window + SLOTS - 1) / SLOTS, SLOTS);
+        return sum(minutes, Math.floorDiv(nowSecond, SLOTS), windowMinutes);
+    }
+
+    private void increment(AtomicLongArray ring, int stripe, long interval) {
+        int index = stripe * SLOTS + (int) Math.floorMod(interval, SLOTS);
+        long tag = interval & TAG_MASK;
+        while (true) {
+            long current = ring.get(index);
+            long currentTag = current >>> COUNT_BITS;
+            long next;
+            if (currentTag == tag) {
+                next = (current & COUNT_MASK) == COUNT_MASK ? current : current + 1;
+            } else if (isAfter(tag, currentTag) || current == 0) {
+                next = (tag << COUNT_BITS) | 1;
+            } else {
+                // Ячейка уже занята более поздним интервалом
+                return;
+            }
+            if (ring.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private long sum(AtomicLongArray ring, long last, int intervals) {
+        long total = 0;
+        for (long interval = last - intervals + 1; interval <= last; interval++) {
+            int slot = (int) Math.floorMod(interval, SLOTS);
+            long tag = interval & TAG_MASK;
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                long value = ring.get(stripe * SLOTS + slot);
+                if (value >>> COUNT_BITS == tag) {
+                    total += value & COUNT_MASK;
+                }
+            }
+        }
+        return total;
+    }
+
+    // Номера интервалов хранятся по модулю 2^TAG_BITS, поэтому сравниваются через разность
+    private static boolean isAfter(long tag, long other) {
+        long diff = (tag - other) & TAG_MASK;
+        return diff != 0 && diff < (1L << (TAG_BITS - 1));
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.ewm.sketch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Алгоритм Space-Saving: самые частые ключи потока в памяти на capacity счётчиков.
+// Счётчик ключа завышает истинную частоту не более чем на минимальный счётчик на момент его вытеснения,
+// любой ключ с частотой больше total / capacity гарантированно присутствует в сводке.
+// Счётчики хранятся в min-куче, поэтому вытеснение и увеличение стоят O(log capacity).
+// Класс не потокобезопасен.
+public class SpaceSaving {
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final Map<Long, Integer> positions;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(long key) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position]++;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            int last = size++;
+            keys[last] = key;
+            counts[last] = 1;
+            positions.put(key, last);
+            siftUp(last);
+            return;
+        }
+        // Вытесняется ключ с минимальным счётчиком, новый ключ наследует его значение
+        positions.remove(keys[0]);
+        keys[0] = key;
+        counts[0]++;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    // Счётчик ключа или -1, если ключа нет в сводке
+    public long count(long key) {
+        Integer position = positions.get(key);
+        return position == null ? -1 : counts[position];
+    }
+
+    // Верхняя граница частоты любого ключа, отсутствующего в сводке
+    public long missingBound() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    public void forEach(KeyCountConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i]);
+        }
+    }
+
+    public void clear() {
+        positions.clear();
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long key = keys[i];
+        long count = counts[i];
+        keys[i] = keys[j];
+        counts[i] = counts[j];
+        keys[j] = key;
+        counts[j] = count;
+        positions.put(keys[i], i);
+        positions.put(keys[j], j);
+    }
+
+    @FunctionalInterface
+    public interface KeyCountConsumer {
+        void accept(long key, long count);
+    }
+}
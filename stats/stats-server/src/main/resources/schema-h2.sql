@@ -0,0 +1,69 @@
+DROP TABLE IF EXISTS statistic, statistic_minute, statistic_hour, statistic_day, statistic_hll, statistic_visitor;
+DROP TABLE IF EXISTS stat_app, stat_uri;
+DROP SEQUENCE IF EXISTS statistic_seq;
+
+CREATE SEQUENCE IF NOT EXISTS statistic_seq START WITH 1 INCREMENT BY 50;
+
+-- Словари: таблицы хитов и агрегатов хранят целочисленные коды вместо строк
+CREATE TABLE IF NOT EXISTS stat_app (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    value VARCHAR(256) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stat_uri (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    value VARCHAR(512) NOT NULL UNIQUE
+);
+
+-- H2 не поддерживает секционирование: statistic - обычная таблица
+CREATE TABLE IF NOT EXISTS statistic (
+    id BIGINT PRIMARY KEY,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS statistic_timestamp_idx ON statistic (timestamp);
+CREATE INDEX IF NOT EXISTS statistic_uri_timestamp_idx ON statistic (uri_id, timestamp);
+
+CREATE TABLE IF NOT EXISTS statistic_minute (
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE TABLE IF NOT EXISTS statistic_hour (
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE TABLE IF NOT EXISTS statistic_day (
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INTEGER NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE TABLE IF NOT EXISTS statistic_hll (
+    uri_id INTEGER NOT NULL,
+    bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INTEGER NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE TABLE IF NOT EXISTS statistic_visitor (
+    uri_id INTEGER NOT NULL,
+    app_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    first_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    last_seen TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (uri_id, app_id, ip)
+);
@@ -1,9 +0,0 @@
-DROP TABLE IF EXISTS statistic;
-
-CREATE TABLE IF NOT EXISTS statistic (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    app VARCHAR(256) NOT NULL,
-    uri VARCHAR(512) NOT NULL,
-    ip VARCHAR(100) NOT NULL,
-    timestamp TIMESTAMP WITHOUT TIME ZONE
-);
\ No newline at end of file
@@ -0,0 +1,60 @@
+package ru.practicum.ewm.dictionary;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriTrieTest {
+    private final UriTrie trie = new UriTrie();
+
+    @BeforeEach
+    void fill() {
+        // Порядок вставки заставляет расщеплять уже существующие рёбра
+        trie.put("/events/12", 1);
+        trie.put("/events/1", 2);
+        trie.put("/events", 3);
+        trie.put("/events/123/comments", 4);
+        trie.put("/compilations/1", 5);
+        trie.put("/e", 6);
+    }
+
+    @Test
+    void collectsAllUrisWithPrefix() {
+        assertThat(collect("/events/1")).containsExactlyInAnyOrder(1, 2, 4);
+        assertThat(collect("/events")).containsExactlyInAnyOrder(1, 2, 3, 4);
+        assertThat(collect("/e")).containsExactlyInAnyOrder(1, 2, 3, 4, 6);
+        assertThat(collect("")).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6);
+    }
+
+    @Test
+    void prefixEndingInsideEdgeMatchesSubtree() {
+        assertThat(collect("/ev")).containsExactlyInAnyOrder(1, 2, 3, 4);
+        assertThat(collect("/events/123/com")).containsExactly(4);
+        assertThat(collect("/comp")).containsExactly(5);
+    }
+
+    @Test
+    void unknownPrefixMatchesNothing() {
+        assertThat(collect("/users")).isEmpty();
+        assertThat(collect("/events/2")).isEmpty();
+        assertThat(collect("/evx")).isEmpty();
+        assertThat(collect("/events/123/comments/1")).isEmpty();
+    }
+
+    @Test
+    void reinsertedUriKeepsLatestId() {
+        trie.put("/events/1", 7);
+
+        assertThat(collect("/events/1")).containsExactlyInAnyOrder(1, 7, 4);
+    }
+
+    private List<Integer> collect(String prefix) {
+        List<Integer> ids = new ArrayList<>();
+        trie.collect(prefix, ids::add);
+        return ids;
+    }
+}
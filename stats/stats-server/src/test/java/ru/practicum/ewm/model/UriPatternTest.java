@@ -0,0 +1,70 @@
+package ru.practicum.ewm.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriPatternTest {
+    @Test
+    void prefixMatchesUrisStartingWithIt() {
+        UriPattern pattern = UriPattern.prefix("/events/1");
+
+        assertThat(pattern.matches("/events/1")).isTrue();
+        assertThat(pattern.matches("/events/15/comments")).isTrue();
+        assertThat(pattern.matches("/events/2")).isFalse();
+        assertThat(pattern.getLiteralPrefix()).isEqualTo("/events/1");
+    }
+
+    @Test
+    void singleStarStaysWithinPathSegment() {
+        UriPattern pattern = UriPattern.glob("/events/*/comments");
+
+        assertThat(pattern.matches("/events/1/comments")).isTrue();
+        assertThat(pattern.matches("/events//comments")).isTrue();
+        assertThat(pattern.matches("/events/1/2/comments")).isFalse();
+        assertThat(pattern.matches("/events/1/comments/3")).isFalse();
+        assertThat(pattern.getLiteralPrefix()).isEqualTo("/events/");
+    }
+
+    @Test
+    void doubleStarCrossesPathSegments() {
+        UriPattern pattern = UriPattern.glob("/events/**");
+
+        assertThat(pattern.matches("/events/")).isTrue();
+        assertThat(pattern.matches("/events/1/comments/3")).isTrue();
+        assertThat(pattern.matches("/events")).isFalse();
+    }
+
+    @Test
+    void questionMarkMatchesOneCharacterExceptSlash() {
+        UriPattern pattern = UriPattern.glob("/events/?");
+
+        assertThat(pattern.matches("/events/7")).isTrue();
+        assertThat(pattern.matches("/events/12")).isFalse();
+        assertThat(pattern.matches("/events//")).isFalse();
+    }
+
+    @Test
+    void regexCharactersAreLiteral() {
+        UriPattern pattern = UriPattern.glob("/events.(1)+/*");
+
+        assertThat(pattern.matches("/events.(1)+/x")).isTrue();
+        assertThat(pattern.matches("/eventsX(1)+/x")).isFalse();
+        assertThat(pattern.matches("/events.1/x")).isFalse();
+    }
+
+    @Test
+    void globWithoutWildcardsMatchesExactly() {
+        UriPattern pattern = UriPattern.glob("/events/1");
+
+        assertThat(pattern.matches("/events/1")).isTrue();
+        assertThat(pattern.matches("/events/12")).isFalse();
+        assertThat(pattern.getLiteralPrefix()).isEqualTo("/events/1");
+    }
+
+    @Test
+    void patternsAreEqualBySource() {
+        assertThat(UriPattern.glob("/events/*")).isEqualTo(UriPattern.glob("/events/*"));
+        assertThat(UriPattern.glob("/events/")).isNotEqualTo(UriPattern.prefix("/events/"));
+    }
+}
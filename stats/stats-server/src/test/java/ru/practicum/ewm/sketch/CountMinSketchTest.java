@@ -0,0 +1,46 @@
+package ru.practicum.ewm.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTest {
+    private static final int WIDTH = 1024;
+
+    @Test
+    void estimateNeverUndercountsAndStaysWithinBound() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH);
+        Map<Long, Long> counts = new HashMap<>();
+        Random random = new Random(42);
+        int total = 100_000;
+        for (int i = 0; i < total; i++) {
+            // Частоты по закону Ципфа: несколько частых ключей и длинный хвост
+            long key = (long) Math.floor(Math.pow(10_000, random.nextDouble()));
+            sketch.add(key);
+            counts.merge(key, 1L, Long::sum);
+        }
+
+        double bound = Math.E * total / WIDTH;
+        long exceeded = counts.entrySet().stream()
+                .peek(entry -> assertThat(sketch.estimate(entry.getKey())).isGreaterThanOrEqualTo(entry.getValue()))
+                .filter(entry -> sketch.estimate(entry.getKey()) - entry.getValue() > bound)
+                .count();
+        // Граница выполняется с вероятностью 1 - e^-4 ≈ 98% для каждого ключа
+        assertThat((double) exceeded / counts.size()).isLessThan(0.02);
+    }
+
+    @Test
+    void clearResetsCounters() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH);
+        sketch.add(1);
+        sketch.add(1);
+
+        sketch.clear();
+
+        assertThat(sketch.estimate(1)).isZero();
+    }
+}
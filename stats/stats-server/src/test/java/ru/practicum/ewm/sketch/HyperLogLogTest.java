@@ -0,0 +1,99 @@
+package ru.practicum.ewm.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+    // Четыре стандартные ошибки (до 2.3% в переходной зоне): тест не должен зависеть от удачного набора значений
+    private static final double MAX_RELATIVE_ERROR = 4 * 0.023;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000})
+    void estimateStaysWithinErrorBound(int count) {
+        HyperLogLog sketch = new HyperLogLog();
+
+        for (int i = 0; i < count; i++) {
+            sketch.offer(value(i));
+            sketch.offer(value(i));
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(count, within(Math.max(1, count * MAX_RELATIVE_ERROR)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 500, 1_024, 1_500, 50_000})
+    void bytesSurviveRoundTrip(int count) {
+        HyperLogLog sketch = sketch(0, count);
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.toBytes()).isEqualTo(sketch.toBytes());
+    }
+
+    @Test
+    void smallSketchIsStoredSparse() {
+        assertThat(new HyperLogLog().toBytes()).isEmpty();
+        assertThat(sketch(0, 10).toBytes()).hasSize(30);
+        assertThat(sketch(0, 100_000).toBytes()).hasSize(HyperLogLog.REGISTERS);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 800, 50_000})
+    void mergeEqualsSketchOfUnion(int count) {
+        HyperLogLog left = sketch(0, count);
+        HyperLogLog right = sketch(count / 2, count + count / 2);
+
+        left.merge(right);
+
+        assertThat(left.toBytes()).isEqualTo(sketch(0, count + count / 2).toBytes());
+    }
+
+    @Test
+    void mergeOfSparseIntoDenseEqualsSketchOfUnion() {
+        HyperLogLog dense = sketch(0, 50_000);
+
+        dense.merge(sketch(50_000, 50_010));
+
+        assertThat(dense.toBytes()).isEqualTo(sketch(0, 50_010).toBytes());
+    }
+
+    @Test
+    void mergeIsIdempotent() {
+        HyperLogLog sketch = sketch(0, 1_000);
+        byte[] before = sketch.toBytes();
+
+        sketch.merge(sketch.copy());
+        sketch.merge(HyperLogLog.fromBytes(before));
+
+        assertThat(sketch.toBytes()).isEqualTo(before);
+    }
+
+    @Test
+    void malformedBytesAreRejected() {
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[4]))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Номера регистров должны возрастать
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{0, 5, 1, 0, 5, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static HyperLogLog sketch(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.offer(value(i));
+        }
+        return sketch;
+    }
+
+    private static byte[] value(int i) {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
+    }
+}
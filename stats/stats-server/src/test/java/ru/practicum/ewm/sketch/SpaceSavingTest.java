@@ -0,0 +1,68 @@
+package ru.practicum.ewm.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+    private static final int CAPACITY = 64;
+
+    @Test
+    void countsAreExactWhileBelowCapacity() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        for (long key = 0; key < CAPACITY - 1; key++) {
+            for (int i = 0; i <= key; i++) {
+                summary.offer(key);
+            }
+        }
+
+        for (long key = 0; key < CAPACITY - 1; key++) {
+            assertThat(summary.count(key)).isEqualTo(key + 1);
+        }
+        assertThat(summary.missingBound()).isZero();
+    }
+
+    @Test
+    void frequentKeysAreKeptWithBoundedOvercount() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        Map<Long, Long> counts = new HashMap<>();
+        Random random = new Random(7);
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            long key = (long) Math.floor(Math.pow(100_000, random.nextDouble()));
+            summary.offer(key);
+            counts.merge(key, 1L, Long::sum);
+        }
+
+        long missingBound = summary.missingBound();
+        assertThat(missingBound).isLessThanOrEqualTo(total / CAPACITY);
+        counts.forEach((key, count) -> {
+            long estimate = summary.count(key);
+            if (count > total / CAPACITY) {
+                assertThat(estimate).as("частый ключ %d", key).isPositive();
+            }
+            if (estimate < 0) {
+                assertThat(count).isLessThanOrEqualTo(missingBound);
+            } else {
+                assertThat(estimate).isBetween(count, count + missingBound);
+            }
+        });
+    }
+
+    @Test
+    void clearEmptiesSummary() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        summary.offer(1);
+
+        summary.clear();
+
+        assertThat(summary.count(1)).isEqualTo(-1);
+        summary.forEach((key, count) -> {
+            throw new AssertionError("Сводка не пуста");
+        });
+    }
+}